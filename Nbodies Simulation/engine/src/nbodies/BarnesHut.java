@@ -0,0 +1,365 @@
+package nbodies;
+
+import java.util.Arrays;
+
+/**
+ * Force engine that approximates the pull of distant groups of particles by
+ * the pull of their total mass at their center of mass, as described by Barnes
+ * and Hut. The universe is divided into a quadtree every step, and a cell of
+ * the tree is treated as a single particle when its width divided by its
+ * distance is less than the opening angle theta. A step costs O(N log N)
+ * instead of O(N^2); theta of 0 gives the direct sum.
+ * <p>
+ * The tree is kept in parallel arrays that are reused from step to step. Cells
+ * that mix positive and negative masses have no meaningful center of mass and
+ * are always opened. Once the tree is built, every particle walks it on its
+ * own, so ranges of particles can be accelerated on different threads. The
+ * pull of particles and cells may be softened with a Plummer softening length
+ * as in DirectSum
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class BarnesHut implements RangeForceEngine {
+
+    public static final double DEFAULT_THETA = 0.5;
+
+    private static final int MAX_DEPTH = 48; // particles closer than this are kept in a shared leaf
+    private static final int NONE = -1;
+
+    private final double radius; // radius of the universe, the smallest root cell
+    private final double theta; // opening angle
+    private final double softeningSquared; // square of the Plummer softening length
+
+    // tree cells, the four children of a cell are stored next to each other
+    private int cellCount;
+    private double[] cellX = new double[0]; // center of the cell
+    private double[] cellY = new double[0];
+    private double[] halfWidth = new double[0]; // half of the cell's width
+    private double[] cellMass = new double[0]; // total mass of the cell
+    private double[] absMass = new double[0]; // total of the absolute masses of the cell
+    private double[] comX = new double[0]; // center of mass of the cell
+    private double[] comY = new double[0];
+    private int[] firstChild = new int[0]; // index of the first child, NONE for leaves
+    private int[] firstBody = new int[0]; // first particle of a leaf, NONE if empty
+
+    private int[] nextBody = new int[0]; // next particle sharing the same leaf
+    private final int[] stack = new int[3 * MAX_DEPTH + 4]; // cells left to visit
+    private final ThreadLocal<int[]> rangeStacks = ThreadLocal.withInitial(() -> new int[3 * MAX_DEPTH + 4]); // stack of each thread accelerating ranges
+
+    /**
+     * Constructs a new Barnes-Hut force engine without softening
+     *
+     * @param universeRadius The radius of the universe, the tree covers at
+     *            least this radius around the origin
+     * @param openingAngle The opening angle theta
+     * @throws IllegalArgumentException if the opening angle is negative
+     */
+    public BarnesHut(double universeRadius, double openingAngle) {
+        this(universeRadius, openingAngle, 0.0);
+    }
+
+    /**
+     * Constructs a new Barnes-Hut force engine
+     *
+     * @param universeRadius The radius of the universe, the tree covers at
+     *            least this radius around the origin
+     * @param openingAngle The opening angle theta
+     * @param softening The Plummer softening length, 0 for Newtonian forces
+     * @throws IllegalArgumentException if the opening angle or the softening
+     *             length is negative
+     */
+    public BarnesHut(double universeRadius, double openingAngle, double softening) {
+
+        if (!(openingAngle >= 0.0)) {
+            throw new IllegalArgumentException("theta must not be negative");
+        }
+        if (!(softening >= 0.0)) {
+            throw new IllegalArgumentException("softening must not be negative");
+        }
+
+        radius = universeRadius;
+        theta = openingAngle;
+        softeningSquared = softening * softening;
+
+    }
+
+    /**
+     * Get the opening angle
+     *
+     * @return The opening angle theta of this engine
+     */
+    public double getTheta() {
+        return theta;
+    }
+
+    @Override
+    public void computeAccelerations(ParticleStore particles) {
+
+        prepare(particles);
+
+        for (int i = 0; i < particles.size(); i++) {
+            accelerate(particles, i, stack);
+        }
+    }
+
+    @Override
+    public void computeAccelerations(ParticleStore particles, int[] active, int count) {
+
+        prepare(particles);
+
+        for (int k = 0; k < count; k++) {
+            accelerate(particles, active[k], stack);
+        }
+    }
+
+    @Override
+    public void accelerate(ParticleStore particles, int from, int to) {
+
+        // ranges may be accelerated at the same time, each thread needs its own stack
+        int[] cells = rangeStacks.get();
+        for (int i = from; i < to; i++) {
+            accelerate(particles, i, cells);
+        }
+    }
+
+    /**
+     * Builds the quadtree over the current positions of the particles and
+     * calculates the mass and center of mass of every cell
+     *
+     * @param particles The particles of the universe
+     */
+    @Override
+    public void prepare(ParticleStore particles) {
+
+        int n = particles.size();
+        double[] x = particles.x;
+        double[] y = particles.y;
+
+        if (nextBody.length < n) {
+            nextBody = new int[n];
+        }
+
+        // the root cell is centered on the origin and grows to hold escaped particles
+        double half = Math.abs(radius);
+        for (int i = 0; i < n; i++) {
+            half = Math.max(half, Math.max(Math.abs(x[i]), Math.abs(y[i])));
+        }
+
+        cellCount = 0;
+        newCell(0.0, 0.0, half * 1.000001);
+
+        for (int i = 0; i < n; i++) {
+            insert(i, x, y);
+        }
+
+        // children are always created after their parents
+        for (int c = cellCount - 1; c >= 0; c--) {
+            summarize(particles, c);
+        }
+    }
+
+    /*
+     * Adds a new empty leaf to the tree and returns its index
+     */
+    private int newCell(double centerX, double centerY, double half) {
+
+        if (cellCount == firstChild.length) {
+            growCells();
+        }
+
+        int c = cellCount++;
+        cellX[c] = centerX;
+        cellY[c] = centerY;
+        halfWidth[c] = half;
+        firstChild[c] = NONE;
+        firstBody[c] = NONE;
+
+        return c;
+
+    }
+
+    /*
+     * Doubles the room for cells in the tree
+     */
+    private void growCells() {
+
+        int capacity = Math.max(64, 2 * firstChild.length);
+        cellX = Arrays.copyOf(cellX, capacity);
+        cellY = Arrays.copyOf(cellY, capacity);
+        halfWidth = Arrays.copyOf(halfWidth, capacity);
+        cellMass = Arrays.copyOf(cellMass, capacity);
+        absMass = Arrays.copyOf(absMass, capacity);
+        comX = Arrays.copyOf(comX, capacity);
+        comY = Arrays.copyOf(comY, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        firstBody = Arrays.copyOf(firstBody, capacity);
+
+    }
+
+    /*
+     * Inserts a particle into the tree, splitting leaves that already hold a
+     * particle until the two are in different cells
+     */
+    private void insert(int i, double[] x, double[] y) {
+
+        double xi = x[i];
+        double yi = y[i];
+        int c = 0;
+        int depth = 0;
+        nextBody[i] = NONE;
+
+        while (true) {
+
+            if (firstChild[c] != NONE) {
+                c = firstChild[c] + quadrant(c, xi, yi);
+                depth++;
+            } else if (firstBody[c] == NONE) {
+                firstBody[c] = i;
+                return;
+            } else if (depth >= MAX_DEPTH) {
+                nextBody[i] = firstBody[c];
+                firstBody[c] = i;
+                return;
+            } else {
+                split(c, x, y);
+            }
+        }
+    }
+
+    /*
+     * Turns a leaf into a cell with four children and moves its particles into
+     * the matching child
+     */
+    private void split(int c, double[] x, double[] y) {
+
+        double quarter = halfWidth[c] / 2.0;
+        int first = newCell(cellX[c] - quarter, cellY[c] - quarter, quarter);
+        newCell(cellX[c] + quarter, cellY[c] - quarter, quarter);
+        newCell(cellX[c] - quarter, cellY[c] + quarter, quarter);
+        newCell(cellX[c] + quarter, cellY[c] + quarter, quarter);
+
+        // a splittable leaf holds exactly one particle
+        int body = firstBody[c];
+        firstBody[c] = NONE;
+        firstChild[c] = first;
+        firstBody[first + quadrant(c, x[body], y[body])] = body;
+
+    }
+
+    /*
+     * Returns which child of a cell holds a point: bit 0 is set right of the
+     * center, bit 1 above it
+     */
+    private int quadrant(int c, double px, double py) {
+
+        int q = px < cellX[c] ? 0 : 1;
+        return py < cellY[c] ? q : q + 2;
+
+    }
+
+    /*
+     * Calculates the total mass and center of mass of a cell from its
+     * particles or its children
+     */
+    private void summarize(ParticleStore particles, int c) {
+
+        double total = 0.0;
+        double totalAbs = 0.0;
+        double weightedX = 0.0;
+        double weightedY = 0.0;
+
+        if (firstChild[c] == NONE) {
+            for (int b = firstBody[c]; b != NONE; b = nextBody[b]) {
+                double m = particles.mass[b];
+                total += m;
+                totalAbs += Math.abs(m);
+                weightedX += m * particles.x[b];
+                weightedY += m * particles.y[b];
+            }
+        } else {
+            for (int k = firstChild[c]; k < firstChild[c] + 4; k++) {
+                total += cellMass[k];
+                totalAbs += absMass[k];
+                weightedX += cellMass[k] * comX[k];
+                weightedY += cellMass[k] * comY[k];
+            }
+        }
+
+        cellMass[c] = total;
+        absMass[c] = totalAbs;
+        comX[c] = total != 0.0 ? weightedX / total : cellX[c];
+        comY[c] = total != 0.0 ? weightedY / total : cellY[c];
+
+    }
+
+    /*
+     * Sets the acceleration of a single particle by walking the tree, using
+     * the given array as the stack of cells left to visit
+     */
+    private void accelerate(ParticleStore particles, int i, int[] cells) {
+
+        double[] x = particles.x;
+        double[] y = particles.y;
+        double[] mass = particles.mass;
+
+        double xi = x[i];
+        double yi = y[i];
+        double thetaSquared = theta * theta;
+        double xAccel = 0.0;
+        double yAccel = 0.0;
+
+        int top = 0;
+        cells[top++] = 0;
+
+        while (top > 0) {
+
+            int c = cells[--top];
+
+            if (firstChild[c] == NONE) {
+                for (int b = firstBody[c]; b != NONE; b = nextBody[b]) {
+                    if (b != i) {
+                        double deltaX = x[b] - xi;
+                        double deltaY = y[b] - yi;
+                        double distSquared = deltaX * deltaX + deltaY * deltaY + softeningSquared;
+                        double scale = mass[b] / (distSquared * Math.sqrt(distSquared));
+                        xAccel += scale * deltaX;
+                        yAccel += scale * deltaY;
+                    }
+                }
+                continue;
+            }
+
+            double deltaX = comX[c] - xi;
+            double deltaY = comY[c] - yi;
+            double distSquared = deltaX * deltaX + deltaY * deltaY;
+            double width = 2.0 * halfWidth[c];
+
+            if (width * width < thetaSquared * distSquared && Math.abs(cellMass[c]) == absMass[c] && !contains(c, xi, yi)) {
+                double softened = distSquared + softeningSquared;
+                double scale = cellMass[c] / (softened * Math.sqrt(softened));
+                xAccel += scale * deltaX;
+                yAccel += scale * deltaY;
+            } else {
+                for (int k = firstChild[c]; k < firstChild[c] + 4; k++) {
+                    if (absMass[k] != 0.0) {
+                        cells[top++] = k;
+                    }
+                }
+            }
+        }
+
+        particles.ax[i] = Planet.GRAVITATIONAL_CONSTANT * xAccel;
+        particles.ay[i] = Planet.GRAVITATIONAL_CONSTANT * yAccel;
+
+    }
+
+    /*
+     * Whether a point lies within a cell
+     */
+    private boolean contains(int c, double px, double py) {
+        return Math.abs(px - cellX[c]) <= halfWidth[c] && Math.abs(py - cellY[c]) <= halfWidth[c];
+    }
+
+}
@@ -0,0 +1,255 @@
+package nbodies;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A universe saved in a compact binary file, which can be written at any step
+ * of a simulation and loaded far faster than a text data file. Files are
+ * memory mapped, and the particle data is laid out the way a ParticleStore
+ * holds it, so loading is a bulk copy of each property.
+ * <p>
+ * The file is little-endian: the magic number, the format version, the amount
+ * of particles N, the radius of the universe, the simulation time the file was
+ * written at, the amount of image files followed by each image file name as a
+ * length and UTF-8 bytes, padding up to a multiple of 8 bytes, then N x
+ * coordinates, N y coordinates, N x velocities, N y velocities, N masses and N
+ * collision radii as doubles, N image table indexes as ints, and finally N
+ * particle ids as ints, so particles keep the ids of the universe they were
+ * first loaded from when collided particles have merged. Version 1 files have
+ * no collision radii and are still read, with every radius 0, and neither
+ * they nor version 2 files have ids, which are then given in file order
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class BinaryUniverse {
+
+    public static final String EXTENSION = ".nbu";
+    public static final int MAGIC = 0x4e42_4459; // "NBDY"
+    public static final int VERSION = 3;
+
+    private static final int NO_RADII_VERSION = 1; // last version without collision radii
+    private static final int NO_IDS_VERSION = 2; // last version without particle ids
+
+    private final ParticleStore particles; // the particles of the universe
+    private final double radius; // radius of the universe
+    private final double time; // simulation time the universe was saved at
+
+    /**
+     * Constructs a universe that can be saved
+     *
+     * @param store The particles of the universe
+     * @param universeRadius The radius of the universe
+     * @param simulationTime The simulation time the particles are at
+     */
+    public BinaryUniverse(ParticleStore store, double universeRadius, double simulationTime) {
+
+        particles = store;
+        radius = universeRadius;
+        time = simulationTime;
+
+    }
+
+    /**
+     * Whether a file name names a binary universe file
+     *
+     * @param fileName The name of the file
+     * @return True if the file has the binary universe extension
+     */
+    public static boolean isBinary(String fileName) {
+        return fileName.endsWith(EXTENSION);
+    }
+
+    /**
+     * Get the particles of the universe
+     *
+     * @return The particles
+     */
+    public ParticleStore getParticles() {
+        return particles;
+    }
+
+    /**
+     * Get the radius of the universe
+     *
+     * @return The radius of the universe
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Get the simulation time the universe was saved at
+     *
+     * @return The simulation time
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * Loads a universe from a binary universe file
+     *
+     * @param file The file to load
+     * @return The universe held in the file
+     * @throws IOException if the file cannot be read, is not a binary
+     *             universe file, or holds counts that do not fit in it
+     */
+    public static BinaryUniverse read(Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a binary universe file");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION && version != NO_IDS_VERSION && version != NO_RADII_VERSION) {
+                throw new IOException(file + " has an unsupported version");
+            }
+
+            int n = buffer.getInt();
+            if (n < 0) {
+                throw new IOException("corrupt universe file " + file + ": negative amount of particles");
+            }
+            double radius = buffer.getDouble();
+            double time = buffer.getDouble();
+
+            int imageCount = buffer.getInt();
+            if (imageCount < 0) {
+                throw new IOException("corrupt universe file " + file + ": negative amount of image files");
+            }
+            if (imageCount > buffer.remaining() / 4) {
+                throw new IOException("corrupt universe file " + file + ": " + imageCount + " image files do not fit in it");
+            }
+            String[] images = new String[imageCount];
+            for (int k = 0; k < images.length; k++) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("corrupt universe file " + file + ": image file name of " + length + " bytes does not fit in it");
+                }
+                byte[] name = new byte[length];
+                buffer.get(name);
+                images[k] = new String(name, StandardCharsets.UTF_8);
+            }
+
+            int bytesPerParticle = (version == NO_RADII_VERSION ? 5 : 6) * 8 + (version > NO_IDS_VERSION ? 8 : 4);
+            long start = align(buffer.position());
+            if (start + (long) n * bytesPerParticle > buffer.limit()) {
+                throw new IOException("corrupt universe file " + file + ": " + n + " particles do not fit in it");
+            }
+            buffer.position((int) start);
+
+            ParticleStore particles = new ParticleStore(n);
+            particles.load(n, images);
+            buffer.asDoubleBuffer().get(particles.x, 0, n);
+            buffer.position(buffer.position() + 8 * n);
+            buffer.asDoubleBuffer().get(particles.y, 0, n);
+            buffer.position(buffer.position() + 8 * n);
+            buffer.asDoubleBuffer().get(particles.vx, 0, n);
+            buffer.position(buffer.position() + 8 * n);
+            buffer.asDoubleBuffer().get(particles.vy, 0, n);
+            buffer.position(buffer.position() + 8 * n);
+            buffer.asDoubleBuffer().get(particles.mass, 0, n);
+            buffer.position(buffer.position() + 8 * n);
+            if (version != NO_RADII_VERSION) {
+                buffer.asDoubleBuffer().get(particles.radius, 0, n);
+                buffer.position(buffer.position() + 8 * n);
+            }
+            buffer.asIntBuffer().get(particles.image, 0, n);
+            if (version > NO_IDS_VERSION) {
+                buffer.position(buffer.position() + 4 * n);
+                buffer.asIntBuffer().get(particles.id, 0, n);
+                particles.idsLoaded();
+            }
+
+            for (int i = 0; i < n; i++) {
+                if (particles.image[i] < 0 || particles.image[i] >= images.length) {
+                    throw new IOException(file + " has an image index out of range");
+                }
+                if (particles.id[i] < 0) {
+                    throw new IOException(file + " has a negative particle id");
+                }
+            }
+
+            return new BinaryUniverse(particles, radius, time);
+
+        } catch (BufferUnderflowException e) {
+            throw new IOException(file + " is truncated", e);
+        }
+    }
+
+    /**
+     * Saves this universe to a binary universe file, replacing the file if it
+     * exists
+     *
+     * @param file The file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+
+        int n = particles.size();
+        byte[][] images = new byte[particles.getImageCount()][];
+        long header = 4 + 4 + 4 + 8 + 8 + 4;
+        for (int k = 0; k < images.length; k++) {
+            images[k] = particles.getImageName(k).getBytes(StandardCharsets.UTF_8);
+            header += 4 + images[k].length;
+        }
+        long size = align(header) + 6L * 8 * n + 2 * 4L * n;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(n);
+            buffer.putDouble(radius);
+            buffer.putDouble(time);
+            buffer.putInt(images.length);
+            for (byte[] name : images) {
+                buffer.putInt(name.length);
+                buffer.put(name);
+            }
+            buffer.position(align(buffer.position()));
+
+            buffer.asDoubleBuffer().put(particles.x, 0, n);
+            buffer.position(buffer.position() + 8 * n);
+            buffer.asDoubleBuffer().put(particles.y, 0, n);
+            buffer.position(buffer.position() + 8 * n);
+            buffer.asDoubleBuffer().put(particles.vx, 0, n);
+            buffer.position(buffer.position() + 8 * n);
+            buffer.asDoubleBuffer().put(particles.vy, 0, n);
+            buffer.position(buffer.position() + 8 * n);
+            buffer.asDoubleBuffer().put(particles.mass, 0, n);
+            buffer.position(buffer.position() + 8 * n);
+            buffer.asDoubleBuffer().put(particles.radius, 0, n);
+            buffer.position(buffer.position() + 8 * n);
+            buffer.asIntBuffer().put(particles.image, 0, n);
+            buffer.position(buffer.position() + 4 * n);
+            buffer.asIntBuffer().put(particles.id, 0, n);
+
+            buffer.force();
+        }
+    }
+
+    /*
+     * Rounds a file position up to a multiple of 8 bytes
+     */
+    private static int align(long position) {
+        return (int) ((position + 7) & ~7L);
+    }
+
+}
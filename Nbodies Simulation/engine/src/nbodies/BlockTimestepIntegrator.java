@@ -0,0 +1,225 @@
+package nbodies;
+
+/**
+ * Leapfrog integration with hierarchical block time steps. Each particle moves
+ * with a step of dt / 2^level, where the level is chosen from how quickly the
+ * particle's motion changes, so a close encounter only shortens the steps of
+ * the particles taking part in it. Every particle is drifted on the finest
+ * step in use, but forces are only calculated for the particles whose own step
+ * ends, and all particles meet again at the end of every full step.
+ * <p>
+ * A particle's step is eta * |a| / |da/dt|, a fraction of the time it takes
+ * its acceleration to change, rounded down to a power of two fraction of dt.
+ * The rate of change is measured between the particle's last two force
+ * calculations; before there are two, eta * |v| / |a| is used instead, which
+ * is the same for circular orbits. Steps may shrink whenever a particle's step
+ * ends, but only grow where the larger step lines up with the smaller one,
+ * which keeps the scheme synchronized
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class BlockTimestepIntegrator implements Integrator {
+
+    public static final int DEFAULT_MAX_LEVEL = 10;
+    public static final int LEVEL_LIMIT = 30; // deepest level allowed, so 2^level fits in an int
+    public static final double DEFAULT_ETA = 0.02;
+
+    private final int maxLevel; // deepest level, the smallest step is dt / 2^maxLevel
+    private final double eta; // accuracy parameter of the step criterion
+
+    private boolean primed = false; // whether the state below matches the particles
+    private int[] level = new int[0]; // current level of every particle
+    private int[] wanted = new int[0]; // level each particle asked for at its last force calculation
+    private double[] xAccel = new double[0]; // acceleration of each particle at its last force calculation
+    private double[] yAccel = new double[0];
+    private int[] active = new int[0]; // particles whose step ends in the current sub-step
+
+    /**
+     * Constructs a new block time step integrator
+     *
+     * @param maxLevels The deepest level, the smallest step taken is dt /
+     *            2^maxLevels
+     * @param accuracy Fraction of the time for a particle's acceleration to
+     *            change its velocity that its step may take
+     * @throws IllegalArgumentException if the deepest level is not between 0
+     *             and 30 or the accuracy is not positive
+     */
+    public BlockTimestepIntegrator(int maxLevels, double accuracy) {
+
+        if (maxLevels < 0 || maxLevels > LEVEL_LIMIT) {
+            throw new IllegalArgumentException("levels must be between 0 and " + LEVEL_LIMIT);
+        }
+        if (!(accuracy > 0.0)) {
+            throw new IllegalArgumentException("eta must be positive");
+        }
+
+        maxLevel = maxLevels;
+        eta = accuracy;
+
+    }
+
+    @Override
+    public void step(ParticleStore particles, ForceEngine forces, double dt) {
+
+        int n = particles.size();
+        double[] vx = particles.vx;
+        double[] vy = particles.vy;
+
+        if (!primed || level.length != n) {
+            prime(particles, forces, dt);
+        }
+
+        // every particle is synchronized at the start of a full step, so any level may be taken
+        int finest = 0;
+        for (int i = 0; i < n; i++) {
+            level[i] = wanted[i];
+            finest = Math.max(finest, level[i]);
+        }
+
+        int subSteps = 1 << finest;
+        double h = dt / subSteps;
+
+        for (int s = 0; s < subSteps; s++) {
+
+            // opening half kicks of the particles whose step starts now
+            for (int i = 0; i < n; i++) {
+                int stride = 1 << (finest - level[i]);
+                if (s % stride == 0) {
+                    vx[i] += xAccel[i] * stride * h / 2.0;
+                    vy[i] += yAccel[i] * stride * h / 2.0;
+                }
+            }
+
+            particles.drift(h);
+
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if ((s + 1) % (1 << (finest - level[i])) == 0) {
+                    active[count++] = i;
+                }
+            }
+
+            if (count > 0) {
+                forces.computeAccelerations(particles, active, count);
+            }
+
+            // closing half kicks, then pick the next step of each active particle
+            for (int k = 0; k < count; k++) {
+                int i = active[k];
+                int stride = 1 << (finest - level[i]);
+                double jerk = Math.hypot(particles.ax[i] - xAccel[i], particles.ay[i] - yAccel[i]) / (stride * h);
+                xAccel[i] = particles.ax[i];
+                yAccel[i] = particles.ay[i];
+                vx[i] += xAccel[i] * stride * h / 2.0;
+                vy[i] += yAccel[i] * stride * h / 2.0;
+
+                wanted[i] = levelFor(Math.hypot(xAccel[i], yAccel[i]) / jerk, dt);
+                level[i] = nextLevel(level[i], wanted[i], finest, s + 1);
+            }
+        }
+
+        // leave the accelerations the particles were last kicked with in the store
+        System.arraycopy(xAccel, 0, particles.ax, 0, n);
+        System.arraycopy(yAccel, 0, particles.ay, 0, n);
+
+    }
+
+    @Override
+    public void reset() {
+        primed = false;
+    }
+
+    /**
+     * Moves the levels the particles asked for with the particles. The
+     * accelerations they were last kicked with are the ones in the store,
+     * which moved with them
+     */
+    @Override
+    public void permuted(ParticleStore particles, int[] from) {
+
+        int n = particles.size();
+        if (!primed || wanted.length != n) {
+            return;
+        }
+
+        for (int i = 0; i < n; i++) {
+            active[i] = wanted[from[i]];
+        }
+        System.arraycopy(active, 0, wanted, 0, n);
+        System.arraycopy(particles.ax, 0, xAccel, 0, n);
+        System.arraycopy(particles.ay, 0, yAccel, 0, n);
+
+    }
+
+    /*
+     * Calculates the accelerations of every particle and chooses their first
+     * levels
+     */
+    private void prime(ParticleStore particles, ForceEngine forces, double dt) {
+
+        int n = particles.size();
+        level = new int[n];
+        wanted = new int[n];
+        xAccel = new double[n];
+        yAccel = new double[n];
+        active = new int[n];
+
+        forces.computeAccelerations(particles);
+
+        for (int i = 0; i < n; i++) {
+            xAccel[i] = particles.ax[i];
+            yAccel[i] = particles.ay[i];
+            double accel = Math.hypot(xAccel[i], yAccel[i]);
+            wanted[i] = levelFor(Math.hypot(particles.vx[i], particles.vy[i]) / accel, dt);
+        }
+
+        primed = true;
+
+    }
+
+    /*
+     * Chooses the level of a particle from the time scale its motion changes
+     * on. Particles whose motion does not change, or that have not shown how
+     * fast it changes, take full steps
+     */
+    private int levelFor(double timeScale, double dt) {
+
+        if (!(timeScale > 0.0)) {
+            return 0;
+        }
+
+        double step = eta * timeScale;
+
+        int l = 0;
+        while (l < maxLevel && dt / (1 << l) > step) {
+            l++;
+        }
+
+        return l;
+
+    }
+
+    /*
+     * Chooses the level a particle takes its next step on, given the level it
+     * asked for. Deeper levels are capped at the finest level of the current
+     * full step, shallower levels are only taken where their step starts at
+     * the current sub-step
+     */
+    private static int nextLevel(int current, int asked, int finest, int subStep) {
+
+        if (asked >= current) {
+            return Math.min(asked, finest);
+        }
+
+        int l = current;
+        while (l > asked && subStep % (1 << (finest - (l - 1))) == 0) {
+            l--;
+        }
+
+        return l;
+
+    }
+
+}
@@ -0,0 +1,236 @@
+package nbodies;
+
+/**
+ * Merges particles that collide. Two particles collide when they are closer
+ * than the sum of their collision radii at the end of a step, and are merged
+ * into a single particle with their total mass, moving with their total
+ * momentum from their center of mass. The merged particle has the volume of
+ * both particles together and keeps the image and place in the store of the
+ * heavier one, while the other is removed from the store, so a universe holds
+ * fewer particles, and costs less to step, as its particles merge.
+ * <p>
+ * Collisions are found with a uniform grid of cells at least as wide as the
+ * largest collision diameter, so a particle can only collide with particles in
+ * its own cell or the 8 cells around it. Cells are hashed into a table rather
+ * than stored, so the grid covers any universe and finding collisions takes
+ * O(N) time. A particle is merged at most once per step; bodies piling up
+ * merge over the following steps. Particles without a collision radius of
+ * their own take the default radius, and never collide if it is 0
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class CollisionMerger {
+
+    private static final int NONE = -1;
+
+    private final double defaultRadius; // collision radius of particles without one
+
+    private int mergers = 0; // particles merged away since this merger was constructed
+    private int[] bucket = new int[0]; // first particle in each hash table bucket
+    private int[] next = new int[0]; // next particle in the same bucket
+    private long[] cellX = new long[0]; // grid cell of each particle
+    private long[] cellY = new long[0];
+    private boolean[] merged = new boolean[0]; // particles that took part in a merger this step
+    private boolean[] removed = new boolean[0]; // particles merged into another this step
+
+    /**
+     * Constructs a new collision merger
+     *
+     * @param radius The collision radius of particles without one of their
+     *            own
+     * @throws IllegalArgumentException if the radius is negative
+     */
+    public CollisionMerger(double radius) {
+
+        if (!(radius >= 0.0)) {
+            throw new IllegalArgumentException("collision radius must not be negative");
+        }
+
+        defaultRadius = radius;
+
+    }
+
+    /**
+     * Get the amount of particles merged away since this merger was
+     * constructed
+     *
+     * @return The amount of particles removed by mergers
+     */
+    public int getMergers() {
+        return mergers;
+    }
+
+    /**
+     * Merges every pair of colliding particles and removes the particles
+     * merged away from the store
+     *
+     * @param particles The particles of the universe
+     * @return The amount of particles removed, 0 if nothing collided
+     */
+    public int merge(ParticleStore particles) {
+
+        int n = particles.size();
+        double widest = 0.0;
+        for (int i = 0; i < n; i++) {
+            widest = Math.max(widest, radiusOf(particles, i));
+        }
+
+        if (n < 2 || !(widest > 0.0) || Double.isInfinite(widest)) {
+            return 0;
+        }
+
+        if (next.length < n) {
+            next = new int[n];
+            cellX = new long[n];
+            cellY = new long[n];
+            merged = new boolean[n];
+            removed = new boolean[n];
+            bucket = new int[Integer.highestOneBit(Math.max(n - 1, 1)) << 2];
+        }
+
+        fillGrid(particles, 2.0 * widest);
+
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (merged[i]) {
+                continue;
+            }
+            int j = findCollision(particles, i);
+            if (j != NONE) {
+                combine(particles, i, j);
+                count++;
+            }
+        }
+
+        if (count > 0) {
+            particles.remove(removed);
+            mergers += count;
+        }
+
+        return count;
+
+    }
+
+    /*
+     * Collision radius of a particle, the default radius if it has none
+     */
+    private double radiusOf(ParticleStore particles, int i) {
+
+        double r = particles.radius[i];
+        return r > 0.0 ? r : defaultRadius;
+
+    }
+
+    /*
+     * Puts every particle into the hash table bucket of its grid cell
+     */
+    private void fillGrid(ParticleStore particles, double width) {
+
+        int n = particles.size();
+
+        for (int b = 0; b < bucket.length; b++) {
+            bucket[b] = NONE;
+        }
+
+        for (int i = 0; i < n; i++) {
+            merged[i] = false;
+            removed[i] = false;
+            cellX[i] = (long) Math.floor(particles.x[i] / width);
+            cellY[i] = (long) Math.floor(particles.y[i] / width);
+            int b = hash(cellX[i], cellY[i]);
+            next[i] = bucket[b];
+            bucket[b] = i;
+        }
+    }
+
+    /*
+     * Hash table bucket of a grid cell
+     */
+    private int hash(long cx, long cy) {
+
+        long h = (cx * 0x9e37_79b9_7f4a_7c15L) ^ (cy * 0xc2b2_ae3d_27d4_eb4fL);
+        return (int) (h ^ (h >>> 32)) & (bucket.length - 1);
+
+    }
+
+    /*
+     * Finds the nearest particle after the given one in the store that
+     * collides with it and has not merged yet this step, or NONE. Cells that
+     * share a bucket are searched twice, which only repeats a test
+     */
+    private int findCollision(ParticleStore particles, int i) {
+
+        double xi = particles.x[i];
+        double yi = particles.y[i];
+        double ri = radiusOf(particles, i);
+        int nearest = NONE;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+
+        for (long cx = cellX[i] - 1; cx <= cellX[i] + 1; cx++) {
+            for (long cy = cellY[i] - 1; cy <= cellY[i] + 1; cy++) {
+                for (int j = bucket[hash(cx, cy)]; j != NONE; j = next[j]) {
+                    if (j <= i || merged[j]) {
+                        continue;
+                    }
+                    double deltaX = particles.x[j] - xi;
+                    double deltaY = particles.y[j] - yi;
+                    double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+                    if (distance < ri + radiusOf(particles, j) && distance < nearestDistance) {
+                        nearest = j;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+        }
+
+        return nearest;
+
+    }
+
+    /*
+     * Merges two colliding particles into the heavier one and marks the other
+     * for removal. Momentum is conserved unless the masses cancel out, when
+     * the merged particle is given the mean velocity of the two instead
+     */
+    private void combine(ParticleStore particles, int i, int j) {
+
+        int kept = Math.abs(particles.mass[j]) > Math.abs(particles.mass[i]) ? j : i;
+        int gone = kept == i ? j : i;
+
+        double massKept = particles.mass[kept];
+        double massGone = particles.mass[gone];
+        double total = massKept + massGone;
+        double weightKept = Math.abs(massKept);
+        double weightGone = Math.abs(massGone);
+        double weights = weightKept + weightGone;
+        if (!(weights > 0.0)) {
+            weightKept = 1.0;
+            weightGone = 1.0;
+            weights = 2.0;
+        }
+
+        // the center of mass is weighted by the size of each mass, so it lies between the two even for negative masses
+        particles.x[kept] = (weightKept * particles.x[kept] + weightGone * particles.x[gone]) / weights;
+        particles.y[kept] = (weightKept * particles.y[kept] + weightGone * particles.y[gone]) / weights;
+        if (total != 0.0) {
+            particles.vx[kept] = (massKept * particles.vx[kept] + massGone * particles.vx[gone]) / total;
+            particles.vy[kept] = (massKept * particles.vy[kept] + massGone * particles.vy[gone]) / total;
+        } else {
+            particles.vx[kept] = (particles.vx[kept] + particles.vx[gone]) / 2.0;
+            particles.vy[kept] = (particles.vy[kept] + particles.vy[gone]) / 2.0;
+        }
+
+        double radiusKept = radiusOf(particles, kept);
+        double radiusGone = radiusOf(particles, gone);
+        particles.radius[kept] = Math.cbrt(radiusKept * radiusKept * radiusKept + radiusGone * radiusGone * radiusGone);
+        particles.mass[kept] = total;
+
+        merged[i] = true;
+        merged[j] = true;
+        removed[gone] = true;
+
+    }
+
+}
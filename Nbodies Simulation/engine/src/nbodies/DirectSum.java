@@ -0,0 +1,95 @@
+package nbodies;
+
+/**
+ * Force engine that sums the gravitational pull of every other particle on each
+ * particle directly, the same O(N^2) calculation Planet.setNetForce performs,
+ * but run over the primitive arrays of a ParticleStore. Each particle's
+ * acceleration is summed on its own, so ranges of particles can be accelerated
+ * on different threads. A Plummer softening length may be given, which
+ * limits the pull between particles passing closer than it
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class DirectSum implements RangeForceEngine {
+
+    private final double softeningSquared; // square of the Plummer softening length
+
+    /**
+     * Constructs a new direct sum force engine without softening
+     */
+    public DirectSum() {
+        this(0.0);
+    }
+
+    /**
+     * Constructs a new direct sum force engine
+     *
+     * @param softening The Plummer softening length, 0 for Newtonian forces
+     * @throws IllegalArgumentException if the softening length is negative
+     */
+    public DirectSum(double softening) {
+
+        if (!(softening >= 0.0)) {
+            throw new IllegalArgumentException("softening must not be negative");
+        }
+
+        softeningSquared = softening * softening;
+
+    }
+
+    @Override
+    public void prepare(ParticleStore particles) {
+        // every acceleration is calculated from the particles alone
+    }
+
+    @Override
+    public void accelerate(ParticleStore particles, int from, int to) {
+
+        for (int i = from; i < to; i++) {
+            accelerate(particles, i);
+        }
+    }
+
+    /*
+     * Sets the acceleration of a single particle. The particle itself is
+     * skipped by splitting the loop around it rather than by testing every
+     * index, which keeps the loop bodies free of branches
+     */
+    private void accelerate(ParticleStore particles, int i) {
+
+        double[] x = particles.x;
+        double[] y = particles.y;
+        double[] mass = particles.mass;
+        int n = particles.size();
+
+        double xi = x[i];
+        double yi = y[i];
+        double xAccel = 0.0;
+        double yAccel = 0.0;
+
+        for (int j = 0; j < i; j++) {
+            double deltaX = x[j] - xi;
+            double deltaY = y[j] - yi;
+            double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY + softeningSquared);
+            double scale = mass[j] / (distance * distance * distance);
+            xAccel += scale * deltaX;
+            yAccel += scale * deltaY;
+        }
+
+        for (int j = i + 1; j < n; j++) {
+            double deltaX = x[j] - xi;
+            double deltaY = y[j] - yi;
+            double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY + softeningSquared);
+            double scale = mass[j] / (distance * distance * distance);
+            xAccel += scale * deltaX;
+            yAccel += scale * deltaY;
+        }
+
+        particles.ax[i] = Planet.GRAVITATIONAL_CONSTANT * xAccel;
+        particles.ay[i] = Planet.GRAVITATIONAL_CONSTANT * yAccel;
+
+    }
+
+}
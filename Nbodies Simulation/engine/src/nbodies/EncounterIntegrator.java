@@ -0,0 +1,341 @@
+package nbodies;
+
+/**
+ * Leapfrog integration that sub-steps close encounters. At the start of every
+ * step, each particle that comes closer than the encounter distance to another
+ * during the step, moving in a straight line, is paired with the particle it
+ * comes closest to, if that particle comes closest to it as well. The pull
+ * between the two particles of a pair is split off from the rest of their
+ * accelerations: the rest kicks them as LeapfrogIntegrator kicks every
+ * particle, while the motion of the pair under its own pull replaces their
+ * drift and is integrated with as many smaller leapfrog steps as the pair
+ * needs. Every other particle moves exactly as with LeapfrogIntegrator, so a
+ * close encounter no longer forces a small time step on the whole universe.
+ * <p>
+ * A pair's sub-steps are eta times its dynamical time sqrt(r^3 / G(m1 + m2))
+ * at the periapsis of its two body orbit, but there are never more than the
+ * given amount of them per step. The periapsis is the same whether the pair is
+ * approaching or receding, which keeps the sub-steps time symmetric so that
+ * their energy errors cancel over an encounter. Encounters are found by
+ * sweeping through the particles in order of their x coordinate, an order kept
+ * between steps and fixed by insertion sort, which takes linear time while
+ * particles rarely pass each other. The softening length must match that of
+ * the force engine, so that the pull split off is the pull the engine included
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class EncounterIntegrator implements Integrator {
+
+    public static final int DEFAULT_MAX_SUB_STEPS = 256;
+
+    private static final int NONE = -1;
+
+    private final double encounterSquared; // square of the distance particles are paired within
+    private final int maxSubSteps; // most sub-steps a pair takes in a step
+    private final double eta; // fraction of a pair's dynamical time its sub-steps take
+    private final double softeningSquared; // square of the Plummer softening length of the force engine
+
+    private boolean primed = false; // whether the accelerations match the current positions
+    private int[] order = new int[0]; // particles in order of their x coordinate
+    private int[] partner = new int[0]; // particle each particle is paired with, NONE if unpaired
+    private double[] nearest = new double[0]; // squared closest approach to the nearest particle within the encounter distance
+    private int[] pairs = new int[0]; // first particle of each pair
+    private int pairCount; // amount of pairs in the current step
+
+    /**
+     * Constructs a new close encounter integrator
+     *
+     * @param encounterDistance The distance particles are sub-stepped within
+     * @param maxSteps The most sub-steps a pair takes in a single step
+     * @param accuracy Fraction of a pair's dynamical time its sub-steps take
+     * @param softening The Plummer softening length of the force engine
+     * @throws IllegalArgumentException if the distance or accuracy is not
+     *             positive, there are no sub-steps or the softening length
+     *             is negative
+     */
+    public EncounterIntegrator(double encounterDistance, int maxSteps, double accuracy, double softening) {
+
+        if (!(encounterDistance > 0.0)) {
+            throw new IllegalArgumentException("encounter distance must be positive");
+        }
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("at least one sub-step is needed");
+        }
+        if (!(accuracy > 0.0)) {
+            throw new IllegalArgumentException("eta must be positive");
+        }
+        if (!(softening >= 0.0)) {
+            throw new IllegalArgumentException("softening must not be negative");
+        }
+
+        encounterSquared = encounterDistance * encounterDistance;
+        maxSubSteps = maxSteps;
+        eta = accuracy;
+        softeningSquared = softening * softening;
+
+    }
+
+    /**
+     * Get the amount of pairs sub-stepped in the last step
+     *
+     * @return The amount of close encounters
+     */
+    public int getEncounters() {
+        return pairCount;
+    }
+
+    @Override
+    public void step(ParticleStore particles, ForceEngine forces, double dt) {
+
+        int n = particles.size();
+
+        if (!primed || partner.length != n) {
+            prime(particles, forces);
+        }
+
+        findPairs(particles, dt);
+
+        particles.kick(dt / 2.0);
+        for (int k = 0; k < pairCount; k++) {
+            kickPair(particles, pairs[k], partner[pairs[k]], -dt / 2.0);
+        }
+
+        // unpaired particles drift, pairs move under their own pull
+        for (int i = 0; i < n; i++) {
+            if (partner[i] == NONE) {
+                particles.x[i] += dt * particles.vx[i];
+                particles.y[i] += dt * particles.vy[i];
+            }
+        }
+        for (int k = 0; k < pairCount; k++) {
+            subStep(particles, pairs[k], partner[pairs[k]], dt);
+        }
+
+        forces.computeAccelerations(particles);
+
+        particles.kick(dt / 2.0);
+        for (int k = 0; k < pairCount; k++) {
+            kickPair(particles, pairs[k], partner[pairs[k]], -dt / 2.0);
+        }
+    }
+
+    @Override
+    public void reset() {
+        primed = false;
+    }
+
+    /**
+     * Points the x order at the particles' new indexes, so it stays sorted.
+     * The pairs are found again at the start of every step
+     */
+    @Override
+    public void permuted(ParticleStore particles, int[] from) {
+
+        int n = particles.size();
+        if (!primed || partner.length != n) {
+            return;
+        }
+
+        // the partners are overwritten by the next step, so they hold the new index of each old one meanwhile
+        for (int i = 0; i < n; i++) {
+            partner[from[i]] = i;
+        }
+        for (int a = 0; a < n; a++) {
+            order[a] = partner[order[a]];
+        }
+    }
+
+    /*
+     * Calculates the accelerations of every particle and starts the x order
+     * of the particles over
+     */
+    private void prime(ParticleStore particles, ForceEngine forces) {
+
+        int n = particles.size();
+        order = new int[n];
+        partner = new int[n];
+        nearest = new double[n];
+        pairs = new int[n / 2];
+
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+
+        forces.computeAccelerations(particles);
+        primed = true;
+
+    }
+
+    /*
+     * Pairs up the particles that come closest to each other during a step,
+     * within the encounter distance
+     */
+    private void findPairs(ParticleStore particles, double dt) {
+
+        int n = particles.size();
+        double[] x = particles.x;
+        double[] y = particles.y;
+        double[] vx = particles.vx;
+        double distance = Math.sqrt(encounterSquared);
+
+        sortByX(x, n);
+
+        double fastest = 0.0;
+        for (int i = 0; i < n; i++) {
+            partner[i] = NONE;
+            nearest[i] = encounterSquared;
+            fastest = Math.max(fastest, Math.abs(vx[i]));
+        }
+
+        // only particles after a particle in x order that can reach it along x need checking
+        for (int a = 0; a < n; a++) {
+            int i = order[a];
+            double reach = distance + dt * (Math.abs(vx[i]) + fastest);
+            for (int b = a + 1; b < n; b++) {
+                int j = order[b];
+                if (x[j] - x[i] >= reach) {
+                    break;
+                }
+                double distSquared = closestApproach(particles, i, j, dt);
+                if (distSquared < nearest[i]) {
+                    nearest[i] = distSquared;
+                    partner[i] = j;
+                }
+                if (distSquared < nearest[j]) {
+                    nearest[j] = distSquared;
+                    partner[j] = i;
+                }
+            }
+        }
+
+        pairCount = 0;
+        for (int i = 0; i < n; i++) {
+            int j = partner[i];
+            if (j != NONE && i < j && partner[j] == i) {
+                pairs[pairCount++] = i;
+            }
+        }
+
+        // particles whose nearest neighbor is nearer to another particle stay unpaired
+        for (int i = 0; i < n; i++) {
+            int j = partner[i];
+            if (j != NONE && partner[j] != i) {
+                partner[i] = NONE;
+            }
+        }
+    }
+
+    /*
+     * Calculates the squared distance two particles come closest at during a
+     * step if they move in straight lines
+     */
+    private static double closestApproach(ParticleStore particles, int i, int j, double dt) {
+
+        double deltaX = particles.x[j] - particles.x[i];
+        double deltaY = particles.y[j] - particles.y[i];
+        double veloX = particles.vx[j] - particles.vx[i];
+        double veloY = particles.vy[j] - particles.vy[i];
+        double speedSquared = veloX * veloX + veloY * veloY;
+
+        double t = speedSquared > 0.0 ? -(deltaX * veloX + deltaY * veloY) / speedSquared : 0.0;
+        t = Math.max(0.0, Math.min(dt, t));
+        double closestX = deltaX + t * veloX;
+        double closestY = deltaY + t * veloY;
+
+        return closestX * closestX + closestY * closestY;
+
+    }
+
+    /*
+     * Calculates the squared distance a pair of particles come closest at
+     * under their own pull, the periapsis of their two body orbit, or their
+     * current distance if they push each other away
+     */
+    private static double periapsis(ParticleStore particles, int i, int j) {
+
+        double deltaX = particles.x[j] - particles.x[i];
+        double deltaY = particles.y[j] - particles.y[i];
+        double veloX = particles.vx[j] - particles.vx[i];
+        double veloY = particles.vy[j] - particles.vy[i];
+        double distSquared = deltaX * deltaX + deltaY * deltaY;
+        double mu = Planet.GRAVITATIONAL_CONSTANT * (particles.mass[i] + particles.mass[j]);
+
+        if (!(mu > 0.0)) {
+            return distSquared;
+        }
+
+        double energy = (veloX * veloX + veloY * veloY) / 2.0 - mu / Math.sqrt(distSquared);
+        double momentum = deltaX * veloY - deltaY * veloX;
+        double eccentricity = Math.sqrt(Math.max(0.0, 1.0 + 2.0 * energy * momentum * momentum / (mu * mu)));
+        double q = momentum * momentum / (mu * (1.0 + eccentricity));
+
+        return Math.min(distSquared, q * q);
+
+    }
+
+    /*
+     * Fixes the x order of the particles after they moved, which only takes
+     * a pass when no particle passed another
+     */
+    private void sortByX(double[] x, int n) {
+
+        for (int a = 1; a < n; a++) {
+            int i = order[a];
+            double xi = x[i];
+            int b = a - 1;
+            while (b >= 0 && x[order[b]] > xi) {
+                order[b + 1] = order[b];
+                b--;
+            }
+            order[b + 1] = i;
+        }
+    }
+
+    /*
+     * Moves a pair of particles through a step under their own pull, with
+     * leapfrog steps short enough for the pair's dynamical time at the
+     * closest it can come
+     */
+    private void subStep(ParticleStore particles, int i, int j, double dt) {
+
+        double distSquared = periapsis(particles, i, j) + softeningSquared;
+        double totalMass = Math.abs(particles.mass[i]) + Math.abs(particles.mass[j]);
+        double dynamicalTime = Math.sqrt(distSquared * Math.sqrt(distSquared) / (Planet.GRAVITATIONAL_CONSTANT * totalMass));
+
+        // no mass or a NaN time scale takes a single step
+        int subSteps = (int) Math.min(maxSubSteps, Math.ceil(dt / (eta * dynamicalTime)));
+        subSteps = Math.max(1, subSteps);
+        double h = dt / subSteps;
+
+        // the closing half kick of each sub-step is merged with the opening half kick of the next
+        kickPair(particles, i, j, h / 2.0);
+        for (int s = 0; s < subSteps; s++) {
+            particles.x[i] += h * particles.vx[i];
+            particles.y[i] += h * particles.vy[i];
+            particles.x[j] += h * particles.vx[j];
+            particles.y[j] += h * particles.vy[j];
+            kickPair(particles, i, j, s == subSteps - 1 ? h / 2.0 : h);
+        }
+    }
+
+    /*
+     * Changes the velocities of a pair of particles by their pull on each
+     * other over a length of time
+     */
+    private void kickPair(ParticleStore particles, int i, int j, double dt) {
+
+        double deltaX = particles.x[j] - particles.x[i];
+        double deltaY = particles.y[j] - particles.y[i];
+        double distSquared = deltaX * deltaX + deltaY * deltaY + softeningSquared;
+        double scale = dt * Planet.GRAVITATIONAL_CONSTANT / (distSquared * Math.sqrt(distSquared));
+
+        particles.vx[i] += scale * particles.mass[j] * deltaX;
+        particles.vy[i] += scale * particles.mass[j] * deltaY;
+        particles.vx[j] -= scale * particles.mass[i] * deltaX;
+        particles.vy[j] -= scale * particles.mass[i] * deltaY;
+
+    }
+
+}
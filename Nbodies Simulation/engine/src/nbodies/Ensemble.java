@@ -0,0 +1,215 @@
+package nbodies;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many independent simulations in one JVM, several at a time on a pool of
+ * worker threads. Takes in a run file, which holds a run per line written as
+ * the command line arguments of a headless NBody run, so runs can differ in
+ * their universe files, options, perturbations and seeds. Blank lines and
+ * lines starting with "#" are skipped. The final universe of each run is
+ * written to its own text data file in the output folder, named after the
+ * run's line among the runs, and a run that fails does not stop the others.
+ * --workers=<n> sets the amount of runs simulated at once (one per processor
+ * by default) and --output=<folder> the folder the results are written to
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class Ensemble {
+
+    public static final String WORKERS = "--workers"; // --workers=<amount of runs simulated at once>
+    public static final String OUTPUT = "--output"; // --output=<folder the results are written to>
+    public static final String DEFAULT_OUTPUT = "ensemble";
+    public static final String COMMENT = "#"; // start of a line of the run file that is skipped
+
+    private static final String RESULT_PREFIX = "run-";
+    private static final String RESULT_EXTENSION = ".txt";
+
+    private final int workers; // amount of runs simulated at once
+    private final Path output; // folder the results are written to
+
+    /**
+     * Constructs a runner of simulations
+     *
+     * @param workerCount The amount of runs simulated at once
+     * @param folder The folder the results are written to, which is created if
+     *            it does not exist
+     * @throws IllegalArgumentException if there are no workers
+     */
+    public Ensemble(int workerCount, Path folder) {
+
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("At least one worker is needed");
+        }
+
+        workers = workerCount;
+        output = folder;
+
+    }
+
+    /**
+     * Reads the runs of a run file, skipping blank lines and comments
+     *
+     * @param runFile The run file
+     * @return The command line arguments of each run
+     * @throws IOException if the run file cannot be read
+     */
+    public static List<String[]> readRuns(Path runFile) throws IOException {
+
+        List<String[]> runs = new ArrayList<>();
+        for (String line : Files.readAllLines(runFile, StandardCharsets.UTF_8)) {
+            String run = line.trim();
+            if (!run.isEmpty() && !run.startsWith(COMMENT)) {
+                runs.add(run.split("\\s+"));
+            }
+        }
+
+        return runs;
+
+    }
+
+    /**
+     * Get the file the result of a run is written to
+     *
+     * @param run The index of the run among the runs, from 0
+     * @param runs The amount of runs
+     * @return The result file, numbered from 1 with as many digits as the
+     *         last run needs
+     */
+    public Path getResultFile(int run, int runs) {
+
+        int digits = Integer.toString(runs).length();
+
+        return output.resolve(RESULT_PREFIX + String.format("%0" + digits + "d", run + 1) + RESULT_EXTENSION);
+
+    }
+
+    /**
+     * Simulates every run and writes their results, reporting each run to
+     * standard output as it finishes and each failed run to standard error
+     *
+     * @param runs The command line arguments of each run
+     * @return The amount of runs that failed
+     * @throws IOException if the output folder cannot be created
+     * @throws InterruptedException if interrupted while waiting for the runs
+     */
+    public int run(List<String[]> runs) throws IOException, InterruptedException {
+
+        Files.createDirectories(output);
+
+        List<Callable<Boolean>> tasks = new ArrayList<>(runs.size());
+        for (int k = 0; k < runs.size(); k++) {
+            int run = k;
+            tasks.add(() -> simulate(run, runs.get(run), getResultFile(run, runs.size())));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, Math.max(runs.size(), 1)));
+        int failures = 0;
+        try {
+            for (Future<Boolean> result : pool.invokeAll(tasks)) {
+                if (!result.get()) {
+                    failures++;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return failures;
+
+    }
+
+    /*
+     * Simulates a single run headless until its total time and writes its
+     * final universe, returning whether it succeeded. A run's own trajectory
+     * and checkpoint options are honoured
+     */
+    private static boolean simulate(int run, String[] args, Path result) {
+
+        long start = System.nanoTime();
+        String name = String.join(" ", args);
+
+        try {
+            SimulationOptions options = SimulationOptions.parse(args);
+            try (Simulation simulation = Simulation.load(options)) {
+                double remainingTime = options.getTotalTime() - simulation.getTime();
+                try (TrajectoryRecorder trajectory = simulation.createRecorder(options)) {
+                    simulation.setRecorder(trajectory);
+                    simulation.runHeadless(remainingTime, options.getTimeStep());
+                    if (trajectory != null) {
+                        trajectory.checkpoint(simulation.getParticles());
+                    }
+                }
+                try (FileChannel out = FileChannel.open(result, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    new UniverseWriter(out).write(simulation.getParticles(), simulation.getRadius());
+                }
+            }
+        } catch (Exception e) {
+            System.err.println(String.format("Run %d failed: %s: %s", run + 1, name, e));
+            return false;
+        }
+
+        System.out.println(String.format("Run %d finished in %.3f s: %s -> %s", run + 1, (System.nanoTime() - start) * 1e-9, name, result));
+        return true;
+
+    }
+
+    public static void main(String[] args) {
+
+        int workers = Runtime.getRuntime().availableProcessors();
+        String folder = DEFAULT_OUTPUT;
+        String runFile = null;
+
+        try {
+            for (String arg : args) {
+                if (arg.startsWith(WORKERS + "=")) {
+                    workers = Integer.parseInt(arg.substring(WORKERS.length() + 1));
+                } else if (arg.startsWith(OUTPUT + "=")) {
+                    folder = arg.substring(OUTPUT.length() + 1);
+                } else if (arg.startsWith("--") || runFile != null) {
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+                } else {
+                    runFile = arg;
+                }
+            }
+            if (runFile == null) {
+                throw new IllegalArgumentException("Incorrect amount of arguments.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage() + "\nUsage: java Ensemble [--workers=<n>] [--output=<folder>] <run file>");
+            System.exit(NBody.EXIT_FAILURE);
+        }
+
+        int failures = 0;
+        try {
+            List<String[]> runs = readRuns(Paths.get(runFile));
+            long start = System.nanoTime();
+            failures = new Ensemble(workers, Paths.get(folder)).run(runs);
+            System.out.println(String.format("%d of %d runs finished in %.3f s.", runs.size() - failures, runs.size(), (System.nanoTime() - start) * 1e-9));
+        } catch (IOException | InterruptedException | IllegalArgumentException e) {
+            System.out.println("Could not run " + runFile + ": " + e.getMessage());
+            System.exit(NBody.EXIT_FAILURE);
+        }
+
+        System.exit(failures == 0 ? NBody.EXIT_SUCCESS : NBody.EXIT_FAILURE);
+
+    }
+
+}
@@ -0,0 +1,23 @@
+package nbodies;
+
+/**
+ * Semi-implicit Euler integration: the velocities are updated by the current
+ * accelerations, then the positions by the new velocities. Accurate to first
+ * order in the time step
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class EulerIntegrator implements Integrator {
+
+    @Override
+    public void step(ParticleStore particles, ForceEngine forces, double dt) {
+
+        forces.computeAccelerations(particles);
+        particles.kick(dt);
+        particles.drift(dt);
+
+    }
+
+}
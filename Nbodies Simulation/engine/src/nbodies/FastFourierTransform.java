@@ -0,0 +1,170 @@
+package nbodies;
+
+/**
+ * Discrete Fourier transforms of square grids of complex numbers whose width
+ * is a power of two, with the iterative radix-2 Cooley-Tukey algorithm. The
+ * real and imaginary parts of a grid are kept in separate arrays, one row
+ * after another. A grid is transformed in place, first along its rows, then
+ * along its columns; rows that are known to hold only zeros going in, or that
+ * are not needed coming out, can be left out, which a zero padded grid makes
+ * the most of. The inverse transform is scaled, so a transform followed by its
+ * inverse gives back the grid it started from. Twiddle factors and the bit
+ * reversal permutation are calculated once, and nothing is allocated after
+ * construction
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class FastFourierTransform {
+
+    private final int size; // width and height of the grids
+    private final int[] reversed; // index with its bits reversed
+    private final double[] cos; // cosines of the twiddle angles 2 pi k / size
+    private final double[] sin; // sines of the twiddle angles
+    private final double[] columnRe; // a column being transformed
+    private final double[] columnIm;
+
+    /**
+     * Constructs the transforms of grids of the given width
+     *
+     * @param width The width and height of the grids, a power of two
+     * @throws IllegalArgumentException if the width is not a power of two
+     *             greater than 1
+     */
+    public FastFourierTransform(int width) {
+
+        if (width < 2 || (width & (width - 1)) != 0) {
+            throw new IllegalArgumentException("grid width must be a power of two");
+        }
+
+        size = width;
+        reversed = new int[size];
+        cos = new double[size / 2];
+        sin = new double[size / 2];
+        columnRe = new double[size];
+        columnIm = new double[size];
+
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            reversed[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        for (int k = 0; k < size / 2; k++) {
+            double angle = 2.0 * Math.PI * k / size;
+            cos[k] = Math.cos(angle);
+            sin[k] = Math.sin(angle);
+        }
+
+    }
+
+    /**
+     * Get the width of the grids this transforms
+     *
+     * @return The width and height of the grids
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Transforms a grid in place. Only the first rows of the grid may hold
+     * anything but zeros
+     *
+     * @param re The real parts of the grid
+     * @param im The imaginary parts of the grid
+     * @param filledRows The amount of rows, from the first, that may not be
+     *            zero
+     */
+    public void forward(double[] re, double[] im, int filledRows) {
+
+        for (int row = 0; row < filledRows; row++) {
+            transform(re, im, row * size, false);
+        }
+        for (int column = 0; column < size; column++) {
+            transformColumn(re, im, column, false);
+        }
+    }
+
+    /**
+     * Transforms a grid back in place. Only the first rows of the result are
+     * calculated, the others are left half transformed
+     *
+     * @param re The real parts of the grid
+     * @param im The imaginary parts of the grid
+     * @param neededRows The amount of rows, from the first, to calculate
+     */
+    public void inverse(double[] re, double[] im, int neededRows) {
+
+        for (int column = 0; column < size; column++) {
+            transformColumn(re, im, column, true);
+        }
+
+        double scale = 1.0 / ((double) size * size);
+        for (int row = 0; row < neededRows; row++) {
+            transform(re, im, row * size, true);
+            for (int k = row * size; k < (row + 1) * size; k++) {
+                re[k] *= scale;
+                im[k] *= scale;
+            }
+        }
+    }
+
+    /*
+     * Transforms a column of a grid through a contiguous copy of it
+     */
+    private void transformColumn(double[] re, double[] im, int column, boolean inverse) {
+
+        for (int row = 0; row < size; row++) {
+            columnRe[row] = re[row * size + column];
+            columnIm[row] = im[row * size + column];
+        }
+
+        transform(columnRe, columnIm, 0, inverse);
+
+        for (int row = 0; row < size; row++) {
+            re[row * size + column] = columnRe[row];
+            im[row * size + column] = columnIm[row];
+        }
+    }
+
+    /*
+     * Transforms size contiguous numbers in place, from an offset into the
+     * arrays. The inverse uses the conjugate twiddle factors and is not
+     * scaled
+     */
+    private void transform(double[] re, double[] im, int offset, boolean inverse) {
+
+        for (int i = 0; i < size; i++) {
+            int j = reversed[i];
+            if (i < j) {
+                double t = re[offset + i];
+                re[offset + i] = re[offset + j];
+                re[offset + j] = t;
+                t = im[offset + i];
+                im[offset + i] = im[offset + j];
+                im[offset + j] = t;
+            }
+        }
+
+        double sign = inverse ? 1.0 : -1.0;
+        for (int length = 2; length <= size; length <<= 1) {
+            int half = length >> 1;
+            int step = size / length;
+            for (int start = offset; start < offset + size; start += length) {
+                for (int k = 0; k < half; k++) {
+                    double wr = cos[k * step];
+                    double wi = sign * sin[k * step];
+                    int a = start + k;
+                    int b = a + half;
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+
+}
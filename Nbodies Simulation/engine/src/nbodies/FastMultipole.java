@@ -0,0 +1,697 @@
+package nbodies;
+
+import java.util.Arrays;
+
+/**
+ * Force engine using the fast multipole method. The particles are sorted into
+ * a quadtree, and the potential of the particles in every cell is expanded in
+ * a multipole series about the cell's center. Pairs of cells far enough apart
+ * exchange their pull through local Taylor series about their centers, which
+ * are passed down the tree to the particles, while nearby particles pull each
+ * other directly. Cells interact as pairs, and each exchange works both ways,
+ * so a step costs O(N) instead of the O(N log N) of Barnes-Hut.
+ * <p>
+ * The pull between particles falls off with the square of the distance, the
+ * gradient of a 1/r potential, so the expansions are Cartesian Taylor series
+ * of 1/r rather than the complex series of the 2D logarithmic potential. They
+ * are truncated at the given order: cells whose sizes added up are less than
+ * theta times their distance interact through the series, with errors
+ * shrinking like theta to the power of the order. Softening only applies to
+ * the direct pulls, as it makes no difference to cells far enough apart.
+ * <p>
+ * Positions are measured in widths of the root cell while calculating, which
+ * keeps the powers in the series within range of a double. All arrays are
+ * reused from step to step
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class FastMultipole implements ForceEngine {
+
+    public static final int DEFAULT_ORDER = 6;
+    public static final int MAX_ORDER = 16;
+
+    private static final int LEAF_SIZE = 32; // most particles in a leaf cell
+    private static final int PARTICLES_PER_CELL = 4; // the tree has room for a cell per this many particles from the start
+    private static final int MAX_DEPTH = 48; // deepest a cell is split to, particles closer than that share a leaf
+    private static final int NONE = -1;
+
+    private final int order; // highest power kept in the series
+    private final double theta; // opening angle
+    private final double softening; // Plummer softening length
+
+    // terms of the series, ordered by degree: index d(d+1)/2 + ky holds x^kx y^ky with kx + ky = d
+    private final int terms; // amount of terms up to the order
+    private final int[] lowerX; // term with one less power of x, or terms if there is none
+    private final int[] lowerY; // term with one less power of y, or terms if there is none
+    private final int[] lowerXX; // term with two less powers of x, or terms if there is none
+    private final int[] lowerYY; // term with two less powers of y, or terms if there is none
+    private final int[] degree; // total power of each term
+    private final int[] powerX; // power of x in each term
+    private final int[] powerY; // power of y in each term
+
+    // pairs of terms (big, small) with small <= big in both powers, for shifting series
+    private final int[] shiftBig;
+    private final int[] shiftSmall;
+    private final int[] shiftDiff; // term big - small
+    private final double[] shiftFactor; // binomial(big, small) of both powers
+
+    // pairs of terms (k, n) with |k| + |n| <= order, for turning multipoles into local series
+    private final int[] m2lLocal; // term k of the local series
+    private final int[] m2lMultipole; // term n of the multipole series
+    private final int[] m2lSum; // term k + n
+    private final double[] m2lFactor; // binomial(k + n, n) of both powers
+    private final double[] m2lOdd; // the factor, negated when k + n has an odd degree
+
+    private final double[] coefficients; // Taylor coefficients of 1/r at the current distance, and a 0
+    private final double[] monomials; // powers of the current offset, one per term, and a 0
+    private final int[] bounds = new int[5]; // particle ranges of the quadrants of the cell being split
+
+    // particles in tree order, positions in root cell widths
+    private int[] index = new int[0]; // store index of each particle
+    private double[] px = new double[0];
+    private double[] py = new double[0];
+    private double[] pm = new double[0]; // masses
+    private double[] accX = new double[0]; // accelerations, in root cell widths and without G
+    private double[] accY = new double[0];
+    private double unit; // width of the root cell in meters
+    private double softeningSquared; // square of the softening length in root cell widths
+
+    // tree cells, the children of a cell are stored next to each other
+    private int cellCount;
+    private double[] centerX = new double[0];
+    private double[] centerY = new double[0];
+    private double[] halfWidth = new double[0];
+    private double[] cellRadius = new double[0]; // distance of the farthest particle from the center
+    private int[] begin = new int[0]; // first particle of the cell in tree order
+    private int[] end = new int[0]; // particle after the last
+    private int[] firstChild = new int[0]; // NONE for leaves
+    private int[] childCount = new int[0];
+    private double[] multipoles = new double[0]; // terms of each cell's multipole series
+    private double[] locals = new double[0]; // terms of each cell's local series
+
+    /**
+     * Constructs a new fast multipole force engine
+     *
+     * @param expansionOrder The highest power kept in the series
+     * @param openingAngle The opening angle theta, below 1
+     * @param softeningLength The Plummer softening length, 0 for Newtonian
+     *            forces
+     * @throws IllegalArgumentException if the order is not between 1 and
+     *             MAX_ORDER, theta is not between 0 and 1 or the softening
+     *             length is negative
+     */
+    public FastMultipole(int expansionOrder, double openingAngle, double softeningLength) {
+
+        if (expansionOrder < 1 || expansionOrder > MAX_ORDER) {
+            throw new IllegalArgumentException("order must be between 1 and " + MAX_ORDER);
+        }
+        if (!(openingAngle >= 0.0 && openingAngle < 1.0)) {
+            throw new IllegalArgumentException("theta must be at least 0 and below 1");
+        }
+        if (!(softeningLength >= 0.0)) {
+            throw new IllegalArgumentException("softening must not be negative");
+        }
+
+        order = expansionOrder;
+        theta = openingAngle;
+        softening = softeningLength;
+
+        terms = (order + 1) * (order + 2) / 2;
+        lowerX = new int[terms];
+        lowerY = new int[terms];
+        lowerXX = new int[terms];
+        lowerYY = new int[terms];
+        degree = new int[terms];
+        powerX = new int[terms];
+        powerY = new int[terms];
+        for (int d = 0; d <= order; d++) {
+            for (int ky = 0; ky <= d; ky++) {
+                int t = term(d - ky, ky);
+                degree[t] = d;
+                powerX[t] = d - ky;
+                powerY[t] = ky;
+                lowerX[t] = d - ky >= 1 ? term(d - ky - 1, ky) : terms;
+                lowerY[t] = ky >= 1 ? term(d - ky, ky - 1) : terms;
+                lowerXX[t] = d - ky >= 2 ? term(d - ky - 2, ky) : terms;
+                lowerYY[t] = ky >= 2 ? term(d - ky, ky - 2) : terms;
+            }
+        }
+
+        int shifts = 0;
+        int exchanges = 0;
+        for (int big = 0; big < terms; big++) {
+            for (int small = 0; small < terms; small++) {
+                if (powerX[small] <= powerX[big] && powerY[small] <= powerY[big]) {
+                    shifts++;
+                }
+                if (degree[big] + degree[small] <= order) {
+                    exchanges++;
+                }
+            }
+        }
+
+        shiftBig = new int[shifts];
+        shiftSmall = new int[shifts];
+        shiftDiff = new int[shifts];
+        shiftFactor = new double[shifts];
+        m2lLocal = new int[exchanges];
+        m2lMultipole = new int[exchanges];
+        m2lSum = new int[exchanges];
+        m2lFactor = new double[exchanges];
+        m2lOdd = new double[exchanges];
+
+        shifts = 0;
+        exchanges = 0;
+        for (int big = 0; big < terms; big++) {
+            for (int small = 0; small < terms; small++) {
+                if (powerX[small] <= powerX[big] && powerY[small] <= powerY[big]) {
+                    shiftBig[shifts] = big;
+                    shiftSmall[shifts] = small;
+                    shiftDiff[shifts] = term(powerX[big] - powerX[small], powerY[big] - powerY[small]);
+                    shiftFactor[shifts] = binomial(powerX[big], powerX[small]) * binomial(powerY[big], powerY[small]);
+                    shifts++;
+                }
+                if (degree[big] + degree[small] <= order) {
+                    int sum = term(powerX[big] + powerX[small], powerY[big] + powerY[small]);
+                    m2lLocal[exchanges] = big;
+                    m2lMultipole[exchanges] = small;
+                    m2lSum[exchanges] = sum;
+                    m2lFactor[exchanges] = binomial(powerX[sum], powerX[small]) * binomial(powerY[sum], powerY[small]);
+                    m2lOdd[exchanges] = degree[sum] % 2 == 0 ? m2lFactor[exchanges] : -m2lFactor[exchanges];
+                    exchanges++;
+                }
+            }
+        }
+
+        coefficients = new double[terms + 1];
+        monomials = new double[terms + 1];
+
+    }
+
+    /**
+     * Get the highest power kept in the series
+     *
+     * @return The expansion order
+     */
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * Get the opening angle
+     *
+     * @return The opening angle theta of this engine
+     */
+    public double getTheta() {
+        return theta;
+    }
+
+    @Override
+    public void computeAccelerations(ParticleStore particles) {
+
+        int n = particles.size();
+        if (n == 0) {
+            return;
+        }
+
+        buildTree(particles);
+
+        Arrays.fill(multipoles, 0, cellCount * terms, 0.0);
+        Arrays.fill(locals, 0, cellCount * terms, 0.0);
+        Arrays.fill(accX, 0, n, 0.0);
+        Arrays.fill(accY, 0, n, 0.0);
+
+        // children are always created after their parents
+        for (int c = cellCount - 1; c >= 0; c--) {
+            if (firstChild[c] == NONE) {
+                particlesToMultipole(c);
+            } else {
+                for (int k = firstChild[c]; k < firstChild[c] + childCount[c]; k++) {
+                    shiftMultipole(k, c);
+                }
+            }
+        }
+
+        interact(0, 0);
+
+        for (int c = 0; c < cellCount; c++) {
+            if (firstChild[c] == NONE) {
+                localToParticles(c);
+            } else {
+                for (int k = firstChild[c]; k < firstChild[c] + childCount[c]; k++) {
+                    shiftLocal(c, k);
+                }
+            }
+        }
+
+        // back from root cell widths to meters
+        double scale = Planet.GRAVITATIONAL_CONSTANT / (unit * unit);
+        for (int k = 0; k < n; k++) {
+            particles.ax[index[k]] = scale * accX[k];
+            particles.ay[index[k]] = scale * accY[k];
+        }
+    }
+
+    /*
+     * Index of the term x^kx y^ky
+     */
+    private static int term(int kx, int ky) {
+
+        int d = kx + ky;
+        return d * (d + 1) / 2 + ky;
+
+    }
+
+    /*
+     * Binomial coefficient n choose k
+     */
+    private static double binomial(int n, int k) {
+
+        double result = 1.0;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+
+        return result;
+
+    }
+
+    /*
+     * Copies the particles into tree order, measured in root cell widths,
+     * and divides them into cells
+     */
+    private void buildTree(ParticleStore particles) {
+
+        int n = particles.size();
+        if (index.length < n) {
+            index = new int[n];
+            px = new double[n];
+            py = new double[n];
+            pm = new double[n];
+            accX = new double[n];
+            accY = new double[n];
+            // clumped universes take a cell for every few particles, so this is usually all the room the tree needs
+            if (begin.length < n / PARTICLES_PER_CELL) {
+                growCells(n / PARTICLES_PER_CELL);
+            }
+        }
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, particles.x[i]);
+            minY = Math.min(minY, particles.y[i]);
+            maxX = Math.max(maxX, particles.x[i]);
+            maxY = Math.max(maxY, particles.y[i]);
+        }
+
+        unit = Math.max(maxX - minX, maxY - minY) * 1.000001;
+        if (!(unit > 0.0) || Double.isInfinite(unit)) {
+            unit = 1.0;
+        }
+        double middleX = (minX + maxX) / 2.0;
+        double middleY = (minY + maxY) / 2.0;
+
+        for (int i = 0; i < n; i++) {
+            index[i] = i;
+            px[i] = (particles.x[i] - middleX) / unit;
+            py[i] = (particles.y[i] - middleY) / unit;
+            pm[i] = particles.mass[i];
+        }
+        softeningSquared = (softening / unit) * (softening / unit);
+
+        cellCount = 0;
+        newCell(0.0, 0.0, 0.5, 0, n);
+        split(0, 0);
+
+    }
+
+    /*
+     * Adds a new cell holding a range of particles and returns its index
+     */
+    private int newCell(double x, double y, double half, int from, int to) {
+
+        if (cellCount == begin.length) {
+            growCells(cellCount + 1);
+        }
+
+        int c = cellCount++;
+        centerX[c] = x;
+        centerY[c] = y;
+        halfWidth[c] = half;
+        begin[c] = from;
+        end[c] = to;
+        firstChild[c] = NONE;
+        childCount[c] = 0;
+
+        return c;
+
+    }
+
+    /*
+     * Makes room for at least the given amount of cells in the tree, and at
+     * least twice the room there was
+     */
+    private void growCells(int minimum) {
+
+        int capacity = Math.max(64, Math.max(minimum, 2 * begin.length));
+        centerX = Arrays.copyOf(centerX, capacity);
+        centerY = Arrays.copyOf(centerY, capacity);
+        halfWidth = Arrays.copyOf(halfWidth, capacity);
+        cellRadius = Arrays.copyOf(cellRadius, capacity);
+        begin = Arrays.copyOf(begin, capacity);
+        end = Arrays.copyOf(end, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        childCount = Arrays.copyOf(childCount, capacity);
+        multipoles = Arrays.copyOf(multipoles, capacity * terms);
+        locals = Arrays.copyOf(locals, capacity * terms);
+
+    }
+
+    /*
+     * Divides a cell with too many particles into its non-empty quadrants,
+     * and those into theirs, then measures the radius of the cell. A cell
+     * whose particles all lie in one quadrant shrinks to that quadrant
+     * instead, so every cell that is split has at least two children
+     */
+    private void split(int c, int depth) {
+
+        int from = begin[c];
+        int to = end[c];
+        double x = centerX[c];
+        double y = centerY[c];
+
+        if (to - from <= LEAF_SIZE || depth >= MAX_DEPTH) {
+            double farthest = 0.0;
+            for (int k = from; k < to; k++) {
+                double deltaX = px[k] - x;
+                double deltaY = py[k] - y;
+                farthest = Math.max(farthest, deltaX * deltaX + deltaY * deltaY);
+            }
+            cellRadius[c] = Math.sqrt(farthest);
+            return;
+        }
+
+        // quadrants below and above the center, then left and right of it within each
+        int middle = partition(from, to, py, y);
+        bounds[0] = from;
+        bounds[1] = partition(from, middle, px, x);
+        bounds[2] = middle;
+        bounds[3] = partition(middle, to, px, x);
+        bounds[4] = to;
+
+        double quarter = halfWidth[c] / 2.0;
+        int filled = 0;
+        for (int q = 0; q < 4; q++) {
+            if (bounds[q + 1] > bounds[q]) {
+                filled++;
+            }
+        }
+
+        int first = cellCount;
+        for (int q = 0; q < 4; q++) {
+            if (bounds[q + 1] > bounds[q]) {
+                double childX = x + ((q & 1) == 0 ? -quarter : quarter);
+                double childY = y + (q < 2 ? -quarter : quarter);
+                if (filled == 1) {
+                    centerX[c] = childX;
+                    centerY[c] = childY;
+                    halfWidth[c] = quarter;
+                    split(c, depth + 1);
+                    return;
+                }
+                newCell(childX, childY, quarter, bounds[q], bounds[q + 1]);
+            }
+        }
+        firstChild[c] = first;
+        childCount[c] = cellCount - first;
+
+        double farthest = 0.0;
+        for (int k = first; k < first + childCount[c]; k++) {
+            split(k, depth + 1);
+            double deltaX = centerX[k] - x;
+            double deltaY = centerY[k] - y;
+            farthest = Math.max(farthest, Math.sqrt(deltaX * deltaX + deltaY * deltaY) + cellRadius[k]);
+        }
+        cellRadius[c] = Math.min(farthest, halfWidth[c] * Math.sqrt(2.0));
+
+    }
+
+    /*
+     * Moves the particles of a range below a coordinate ahead of the others
+     * and returns the index of the first of the others
+     */
+    private int partition(int from, int to, double[] coordinate, double bound) {
+
+        int low = from;
+        int high = to - 1;
+
+        while (low <= high) {
+            if (coordinate[low] < bound) {
+                low++;
+            } else {
+                swap(low, high);
+                high--;
+            }
+        }
+
+        return low;
+
+    }
+
+    /*
+     * Swaps two particles in tree order
+     */
+    private void swap(int a, int b) {
+
+        int i = index[a];
+        index[a] = index[b];
+        index[b] = i;
+        double t = px[a];
+        px[a] = px[b];
+        px[b] = t;
+        t = py[a];
+        py[a] = py[b];
+        py[b] = t;
+        t = pm[a];
+        pm[a] = pm[b];
+        pm[b] = t;
+
+    }
+
+    /*
+     * Fills the monomials with the powers of an offset, one per term
+     */
+    private void fillMonomials(double x, double y) {
+
+        monomials[0] = 1.0;
+        for (int t = 1; t < terms; t++) {
+            monomials[t] = powerX[t] > 0 ? monomials[lowerX[t]] * x : monomials[lowerY[t]] * y;
+        }
+    }
+
+    /*
+     * Sums the multipole series of a leaf from its particles
+     */
+    private void particlesToMultipole(int c) {
+
+        int base = c * terms;
+
+        for (int k = begin[c]; k < end[c]; k++) {
+            fillMonomials(centerX[c] - px[k], centerY[c] - py[k]);
+            double m = pm[k];
+            for (int t = 0; t < terms; t++) {
+                multipoles[base + t] += m * monomials[t];
+            }
+        }
+    }
+
+    /*
+     * Adds the multipole series of a child, moved to its parent's center, to
+     * the parent's series
+     */
+    private void shiftMultipole(int child, int parent) {
+
+        int from = child * terms;
+        int to = parent * terms;
+
+        fillMonomials(centerX[parent] - centerX[child], centerY[parent] - centerY[child]);
+        for (int s = 0; s < shiftBig.length; s++) {
+            multipoles[to + shiftBig[s]] += shiftFactor[s] * multipoles[from + shiftSmall[s]] * monomials[shiftDiff[s]];
+        }
+    }
+
+    /*
+     * Adds the local series of a parent, moved to its child's center, to the
+     * child's series
+     */
+    private void shiftLocal(int parent, int child) {
+
+        int from = parent * terms;
+        int to = child * terms;
+
+        fillMonomials(centerX[child] - centerX[parent], centerY[child] - centerY[parent]);
+        for (int s = 0; s < shiftBig.length; s++) {
+            locals[to + shiftSmall[s]] += shiftFactor[s] * locals[from + shiftBig[s]] * monomials[shiftDiff[s]];
+        }
+    }
+
+    /*
+     * Adds the pull of a leaf's local series to each of its particles
+     */
+    private void localToParticles(int c) {
+
+        int base = c * terms;
+
+        for (int k = begin[c]; k < end[c]; k++) {
+            fillMonomials(px[k] - centerX[c], py[k] - centerY[c]);
+            double xAccel = 0.0;
+            double yAccel = 0.0;
+            for (int t = 1; t < terms; t++) {
+                double l = locals[base + t];
+                xAccel += powerX[t] * l * monomials[lowerX[t]];
+                yAccel += powerY[t] * l * monomials[lowerY[t]];
+            }
+            accX[k] += xAccel;
+            accY[k] += yAccel;
+        }
+    }
+
+    /*
+     * Exchanges the pull between two cells, or within a cell if they are the
+     * same, through their series when they are far enough apart and directly
+     * when they hold few particles, otherwise between the children of the
+     * larger cell and the other
+     */
+    private void interact(int a, int b) {
+
+        if (a == b) {
+            if (firstChild[a] == NONE) {
+                pullWithin(a);
+                return;
+            }
+            int first = firstChild[a];
+            int last = first + childCount[a];
+            for (int i = first; i < last; i++) {
+                for (int j = i; j < last; j++) {
+                    interact(i, j);
+                }
+            }
+            return;
+        }
+
+        double deltaX = centerX[a] - centerX[b];
+        double deltaY = centerY[a] - centerY[b];
+        double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        long pairs = (long) (end[a] - begin[a]) * (end[b] - begin[b]);
+
+        if (cellRadius[a] + cellRadius[b] < theta * distance) {
+            if (pairs * 8 < m2lFactor.length) {
+                pullBetween(a, b);
+            } else {
+                exchangeSeries(a, b, deltaX, deltaY);
+            }
+            return;
+        }
+
+        boolean leafA = firstChild[a] == NONE;
+        boolean leafB = firstChild[b] == NONE;
+
+        if (leafA && leafB) {
+            pullBetween(a, b);
+        } else if (leafB || (!leafA && cellRadius[a] >= cellRadius[b])) {
+            for (int k = firstChild[a]; k < firstChild[a] + childCount[a]; k++) {
+                interact(k, b);
+            }
+        } else {
+            for (int k = firstChild[b]; k < firstChild[b] + childCount[b]; k++) {
+                interact(a, k);
+            }
+        }
+    }
+
+    /*
+     * Turns the multipole series of each of two cells into a local series
+     * about the other's center
+     */
+    private void exchangeSeries(int a, int b, double deltaX, double deltaY) {
+
+        // Taylor coefficients of 1/r at the offset of a from b, by their recurrence
+        double distSquared = deltaX * deltaX + deltaY * deltaY;
+        coefficients[terms] = 0.0;
+        coefficients[0] = 1.0 / Math.sqrt(distSquared);
+        for (int t = 1; t < terms; t++) {
+            int d = degree[t];
+            double first = deltaX * coefficients[lowerX[t]] + deltaY * coefficients[lowerY[t]];
+            double second = coefficients[lowerXX[t]] + coefficients[lowerYY[t]];
+            coefficients[t] = -((2 * d - 1) * first + (d - 1) * second) / (d * distSquared);
+        }
+
+        // the offset of b from a is the opposite, which flips the sign of odd terms
+        int baseA = a * terms;
+        int baseB = b * terms;
+        for (int s = 0; s < m2lFactor.length; s++) {
+            double coefficient = coefficients[m2lSum[s]];
+            locals[baseA + m2lLocal[s]] += m2lFactor[s] * coefficient * multipoles[baseB + m2lMultipole[s]];
+            locals[baseB + m2lLocal[s]] += m2lOdd[s] * coefficient * multipoles[baseA + m2lMultipole[s]];
+        }
+    }
+
+    /*
+     * Adds the direct pull between every particle of one cell and every
+     * particle of another
+     */
+    private void pullBetween(int a, int b) {
+
+        for (int i = begin[a]; i < end[a]; i++) {
+            double xi = px[i];
+            double yi = py[i];
+            double massI = pm[i];
+            double xAccel = 0.0;
+            double yAccel = 0.0;
+            for (int j = begin[b]; j < end[b]; j++) {
+                double deltaX = px[j] - xi;
+                double deltaY = py[j] - yi;
+                double distSquared = deltaX * deltaX + deltaY * deltaY + softeningSquared;
+                double inverseCube = 1.0 / (distSquared * Math.sqrt(distSquared));
+                xAccel += pm[j] * deltaX * inverseCube;
+                yAccel += pm[j] * deltaY * inverseCube;
+                accX[j] -= massI * deltaX * inverseCube;
+                accY[j] -= massI * deltaY * inverseCube;
+            }
+            accX[i] += xAccel;
+            accY[i] += yAccel;
+        }
+    }
+
+    /*
+     * Adds the direct pull between every pair of particles within a leaf
+     */
+    private void pullWithin(int c) {
+
+        for (int i = begin[c]; i < end[c]; i++) {
+            double xi = px[i];
+            double yi = py[i];
+            double massI = pm[i];
+            double xAccel = 0.0;
+            double yAccel = 0.0;
+            for (int j = i + 1; j < end[c]; j++) {
+                double deltaX = px[j] - xi;
+                double deltaY = py[j] - yi;
+                double distSquared = deltaX * deltaX + deltaY * deltaY + softeningSquared;
+                double inverseCube = 1.0 / (distSquared * Math.sqrt(distSquared));
+                xAccel += pm[j] * deltaX * inverseCube;
+                yAccel += pm[j] * deltaY * inverseCube;
+                accX[j] -= massI * deltaX * inverseCube;
+                accY[j] -= massI * deltaY * inverseCube;
+            }
+            accX[i] += xAccel;
+            accY[i] += yAccel;
+        }
+    }
+
+}
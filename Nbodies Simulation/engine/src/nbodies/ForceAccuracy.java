@@ -0,0 +1,105 @@
+package nbodies;
+
+/**
+ * How closely the accelerations of an approximate force engine match direct
+ * summation. The engine computes the accelerations of every particle on a copy
+ * of the universe, then the accelerations of an evenly spread sample of the
+ * particles are summed directly, which takes O(N) time per sampled particle.
+ * The error of a particle is the length of the difference between the two
+ * accelerations relative to the root mean square of the direct accelerations
+ * of the sample, so a particle whose pulls nearly cancel out, like a black
+ * hole in the middle of a galaxy, does not swamp the errors of the others
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class ForceAccuracy {
+
+    private final int sampleSize; // amount of particles compared
+    private final double rmsError; // root mean square of the errors, relative to the root mean square acceleration
+    private final double maxError; // largest error, relative to the root mean square acceleration
+
+    private ForceAccuracy(int samples, double rms, double max) {
+
+        sampleSize = samples;
+        rmsError = rms;
+        maxError = max;
+
+    }
+
+    /**
+     * Compares the accelerations a force engine gives a universe with direct
+     * summation on a sample of its particles. The particles are left as they
+     * were
+     *
+     * @param particles The particles of the universe
+     * @param engine The force engine to measure
+     * @param softening The Plummer softening length of the engine
+     * @param samples The most particles to compare
+     * @return The errors of the sampled particles
+     */
+    public static ForceAccuracy measure(ParticleStore particles, ForceEngine engine, double softening, int samples) {
+
+        int n = particles.size();
+        int count = Math.min(n, samples);
+        ParticleStore copy = new ParticleStore(n);
+        copy.copyFrom(particles);
+        engine.computeAccelerations(copy);
+
+        DirectSum direct = new DirectSum(softening);
+        ParticleStore exact = new ParticleStore(n);
+        exact.copyFrom(particles);
+
+        double errors = 0.0;
+        double largest = 0.0;
+        double accelerations = 0.0;
+        for (int s = 0; s < count; s++) {
+            int i = (int) ((long) s * n / count);
+            direct.accelerate(exact, i, i + 1);
+            double deltaX = copy.ax[i] - exact.ax[i];
+            double deltaY = copy.ay[i] - exact.ay[i];
+            double error = deltaX * deltaX + deltaY * deltaY;
+            errors += error;
+            largest = Math.max(largest, error);
+            accelerations += exact.ax[i] * exact.ax[i] + exact.ay[i] * exact.ay[i];
+        }
+
+        if (!(accelerations > 0.0)) {
+            return new ForceAccuracy(count, 0.0, 0.0);
+        }
+
+        return new ForceAccuracy(count, Math.sqrt(errors / accelerations), Math.sqrt(largest * count / accelerations));
+
+    }
+
+    /**
+     * Get the amount of particles compared
+     *
+     * @return The size of the sample
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Get the root mean square of the errors of the sample, relative to the
+     * root mean square acceleration
+     *
+     * @return The typical relative error
+     */
+    public double getRmsError() {
+        return rmsError;
+    }
+
+    /**
+     * Get the largest error of the sample, relative to the root mean square
+     * acceleration
+     *
+     * @return The worst relative error
+     */
+    public double getMaxError() {
+        return maxError;
+    }
+
+}
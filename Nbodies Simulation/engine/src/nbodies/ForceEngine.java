@@ -0,0 +1,34 @@
+package nbodies;
+
+/**
+ * Computes the gravitational acceleration of every particle in a universe due
+ * to the forces acting upon it from the other particles
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public interface ForceEngine {
+
+    /**
+     * Calculates and sets the x and y accelerations of every particle in the
+     * store from the current positions and masses of the particles
+     *
+     * @param particles The particles of the universe
+     */
+    void computeAccelerations(ParticleStore particles);
+
+    /**
+     * Calculates and sets the x and y accelerations of some of the particles
+     * in the store. Accelerations of the other particles may be changed as
+     * well, by default every acceleration is calculated
+     *
+     * @param particles The particles of the universe
+     * @param active Indexes of the particles whose accelerations are needed
+     * @param count The amount of indexes used in the active array
+     */
+    default void computeAccelerations(ParticleStore particles, int[] active, int count) {
+        computeAccelerations(particles);
+    }
+
+}
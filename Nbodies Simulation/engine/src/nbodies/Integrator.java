@@ -0,0 +1,43 @@
+package nbodies;
+
+/**
+ * Advances the particles of a universe through time, using a force engine to
+ * calculate the accelerations the particles move by
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public interface Integrator {
+
+    /**
+     * Advances every particle by a single time step
+     *
+     * @param particles The particles of the universe
+     * @param forces The engine calculating the accelerations of the particles
+     * @param dt The amount of time the step takes
+     */
+    void step(ParticleStore particles, ForceEngine forces, double dt);
+
+    /**
+     * Forgets any state kept from previous steps. Must be called when the
+     * particles are changed other than by this integrator
+     */
+    default void reset() {
+        // nothing is kept between steps by default
+    }
+
+    /**
+     * Tells the integrator the particles were rearranged, as SpatialOrder
+     * does, so state it keeps for each particle can follow them. Their
+     * positions, velocities and accelerations moved with them, so integrators
+     * keeping nothing else need not start over
+     *
+     * @param particles The rearranged particles
+     * @param from The index each particle was moved from
+     */
+    default void permuted(ParticleStore particles, int[] from) {
+        // nothing is kept for each particle by default
+    }
+
+}
@@ -0,0 +1,39 @@
+package nbodies;
+
+/**
+ * Leapfrog integration in its kick-drift-kick, or velocity Verlet, form: half
+ * a velocity update, a full position update, then the other half of the
+ * velocity update with the accelerations at the new positions. It is
+ * symplectic and time reversible, so energy errors stay bounded over long
+ * runs, and it is accurate to second order in the time step while needing a
+ * single force calculation per step like Euler integration
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class LeapfrogIntegrator implements Integrator {
+
+    private boolean primed = false; // whether the accelerations match the current positions
+
+    @Override
+    public void step(ParticleStore particles, ForceEngine forces, double dt) {
+
+        if (!primed) {
+            forces.computeAccelerations(particles);
+            primed = true;
+        }
+
+        particles.kick(dt / 2.0);
+        particles.drift(dt);
+        forces.computeAccelerations(particles);
+        particles.kick(dt / 2.0);
+
+    }
+
+    @Override
+    public void reset() {
+        primed = false;
+    }
+
+}
@@ -0,0 +1,205 @@
+package nbodies;
+
+import java.util.Arrays;
+
+/**
+ * Force engine that sums the pull of every other particle on each particle
+ * directly, like DirectSum, but computes each pairwise term in single
+ * precision. The inner loop streams floats instead of doubles, half the
+ * memory, while each particle's acceleration is still summed in double
+ * precision. The universe is split into a grid of cells, and every
+ * particle's position is kept as a float relative to the double precision
+ * centre of its cell, in units of the size of the universe. The separation of
+ * two particles is the offset between their cells, rounded to a float once
+ * per pair of cells, plus the difference of their relative positions, so its
+ * rounding error is a fraction of the width of a cell rather than of the size
+ * of the universe. The finer the grid the more accurate close pairs are, but
+ * every particle visits every cell holding particles, so cells are sized to
+ * hold 64 particles on average, between 8 and 64 cells along each side; small
+ * universes always get the finest grid. Masses are kept relative to the
+ * heaviest particle. ForceAccuracy measures how far a universe's
+ * accelerations move away from double precision
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class MixedPrecisionSum implements RangeForceEngine {
+
+    public static final int PARTICLES_PER_CELL = 64; // particles a cell is sized to hold on average, so the cell loops stay long
+    public static final int MIN_SIDE = 8; // fewest cells along each side of the grid
+    public static final int MAX_SIDE = 64; // most cells along each side of the grid
+    public static final int SMALL_UNIVERSE = 256; // most particles of a universe always given the finest grid
+
+    private final double softening; // the Plummer softening length
+
+    // particles sorted by cell, relative to their cell's centre in units of the scale
+    private float[] relativeX = new float[0];
+    private float[] relativeY = new float[0];
+    private float[] relativeMass = new float[0]; // masses relative to the heaviest particle
+    private int[] slot = new int[0]; // where each particle is in the sorted arrays
+    private int[] cellOf = new int[0]; // cell of each particle
+
+    private final int[] cellStart = new int[MAX_SIDE * MAX_SIDE + 1]; // first sorted slot of each cell, then the end of the last
+    private final double[] centreX = new double[MAX_SIDE * MAX_SIDE]; // centre of each cell, in units of the scale
+    private final double[] centreY = new double[MAX_SIDE * MAX_SIDE];
+    private final int[] occupied = new int[MAX_SIDE * MAX_SIDE]; // cells holding any particle
+    private int occupiedCells = 0; // amount of cells holding any particle
+    private double factor = 0.0; // turns a sum of relative terms into an acceleration
+    private float softeningSquared = 0.0f; // square of the softening length, in units of the scale
+
+    /**
+     * Constructs a new mixed precision force engine without softening
+     */
+    public MixedPrecisionSum() {
+        this(0.0);
+    }
+
+    /**
+     * Constructs a new mixed precision force engine
+     *
+     * @param softeningLength The Plummer softening length, 0 for Newtonian
+     *            forces
+     * @throws IllegalArgumentException if the softening length is negative
+     */
+    public MixedPrecisionSum(double softeningLength) {
+
+        if (!(softeningLength >= 0.0)) {
+            throw new IllegalArgumentException("softening must not be negative");
+        }
+
+        softening = softeningLength;
+
+    }
+
+    @Override
+    public void prepare(ParticleStore particles) {
+
+        int n = particles.size();
+        if (relativeX.length < n) {
+            relativeX = new float[n];
+            relativeY = new float[n];
+            relativeMass = new float[n];
+            slot = new int[n];
+            cellOf = new int[n];
+        }
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double heaviest = 0.0;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, particles.x[i]);
+            minY = Math.min(minY, particles.y[i]);
+            maxX = Math.max(maxX, particles.x[i]);
+            maxY = Math.max(maxY, particles.y[i]);
+            heaviest = Math.max(heaviest, Math.abs(particles.mass[i]));
+        }
+
+        double scale = Math.max(maxX - minX, maxY - minY);
+        if (!(scale > 0.0) || Double.isInfinite(scale)) {
+            scale = 1.0;
+        }
+        if (!(heaviest > 0.0) || Double.isInfinite(heaviest)) {
+            heaviest = 1.0;
+        }
+
+        int side = MAX_SIDE;
+        if (n > SMALL_UNIVERSE) {
+            side = (int) Math.max(MIN_SIDE, Math.min(MAX_SIDE, Math.sqrt((double) n / PARTICLES_PER_CELL)));
+        }
+        int cells = side * side;
+        double width = scale / side;
+
+        // count the particles of each cell, then place them in cell order
+        Arrays.fill(cellStart, 0, cells + 1, 0);
+        for (int i = 0; i < n; i++) {
+            int column = (int) Math.min(side - 1, Math.max(0, (particles.x[i] - minX) / width));
+            int row = (int) Math.min(side - 1, Math.max(0, (particles.y[i] - minY) / width));
+            cellOf[i] = row * side + column;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+            centreX[c] = (minX + (c % side + 0.5) * width) / scale;
+            centreY[c] = (minY + (c / side + 0.5) * width) / scale;
+        }
+        for (int i = 0; i < n; i++) {
+            int c = cellOf[i];
+            int k = cellStart[c]++;
+            slot[i] = k;
+            relativeX[k] = (float) (particles.x[i] / scale - centreX[c]);
+            relativeY[k] = (float) (particles.y[i] / scale - centreY[c]);
+            relativeMass[k] = (float) (particles.mass[i] / heaviest);
+        }
+        for (int c = cells; c > 0; c--) {
+            cellStart[c] = cellStart[c - 1];
+        }
+        cellStart[0] = 0;
+
+        occupiedCells = 0;
+        for (int c = 0; c < cells; c++) {
+            if (cellStart[c + 1] > cellStart[c]) {
+                occupied[occupiedCells++] = c;
+            }
+        }
+
+        factor = Planet.GRAVITATIONAL_CONSTANT * heaviest / (scale * scale);
+        softeningSquared = (float) ((softening / scale) * (softening / scale));
+
+    }
+
+    @Override
+    public void accelerate(ParticleStore particles, int from, int to) {
+
+        for (int i = from; i < to; i++) {
+            accelerate(particles, i);
+        }
+    }
+
+    /*
+     * Sets the acceleration of a single particle, cell by cell. Within its own
+     * cell the loop is split around the particle itself, which keeps the loop
+     * bodies free of branches
+     */
+    private void accelerate(ParticleStore particles, int i) {
+
+        float[] x = relativeX;
+        float[] y = relativeY;
+        float[] mass = relativeMass;
+        float epsilon = softeningSquared;
+        int own = cellOf[i];
+        int self = slot[i];
+        float xi = x[self];
+        float yi = y[self];
+        double xAccel = 0.0;
+        double yAccel = 0.0;
+
+        for (int k = 0; k < occupiedCells; k++) {
+            int c = occupied[k];
+            // the separation of a particle is the offset of its cell plus its relative position
+            float baseX = (float) (centreX[c] - centreX[own]) - xi;
+            float baseY = (float) (centreY[c] - centreY[own]) - yi;
+            int end = cellStart[c + 1];
+            for (int from = cellStart[c]; from < end;) {
+                int to = c == own && from <= self ? self : end;
+                for (int j = from; j < to; j++) {
+                    float deltaX = baseX + x[j];
+                    float deltaY = baseY + y[j];
+                    float distanceSquared = deltaX * deltaX + deltaY * deltaY + epsilon;
+                    float inverse = 1.0f / (float) Math.sqrt(distanceSquared);
+                    float scale = mass[j] * inverse * inverse * inverse;
+                    xAccel += scale * deltaX;
+                    yAccel += scale * deltaY;
+                }
+                from = to == self ? self + 1 : end;
+            }
+        }
+
+        particles.ax[i] = factor * xAccel;
+        particles.ay[i] = factor * yAccel;
+
+    }
+
+}
@@ -0,0 +1,472 @@
+package nbodies;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ServiceLoader;
+
+/**
+ * Simulates N particles in a plane, particles move due to the gravitational
+ * forces mutually affecting each particle as demonstrated by Sir Issac Newton's
+ * Law of Universal Gravitation. Takes in 3 command line arguments: the length
+ * of the simulation, the size of a time step in the simulation, and a text file
+ * containing planetary data from which to build the universe for the
+ * simulation. The universe is shown by the display of the front end module,
+ * where the theme from 2001: A Space Odyssey plays during the simulation.
+ * Passing --headless runs the simulation without any display and only prints
+ * the final state of the universe. The simulation can be recorded to
+ * a trajectory file and checkpointed as it runs, and a checkpoint can be given
+ * as the universe file to carry on a simulation from where it was saved. The
+ * universe is simulated by a Simulation, which holds all of its state; the
+ * static methods building and running universes here remember the last
+ * universe built, so only one of them can be used at a time
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ *
+ */
+
+public final class NBody {
+
+    private static double universeSize; // radius of the universe that was last built
+    private static double universeTime; // simulation time the universe that was last built was saved at
+
+    public static final int EXIT_SUCCESS = 0;
+    public static final int EXIT_FAILURE = 1;
+    public static final int ACCURACY_SAMPLES = 1000; // particles approximate forces are checked on
+
+    private static ForceEngine forces = new SymmetricDirectSum(); // computes the accelerations each step
+    private static Integrator integrator = new EulerIntegrator(); // moves the particles each step
+    private static CollisionMerger collisions = null; // merges colliding particles, null for none
+    private static TrajectoryRecorder recorder = null; // records the simulation, null for none
+    private static UniverseDisplay display = null; // shows the simulation, null until one is needed
+
+    /**
+     * Builds a new instance of a Planet using data from a text file
+     * 
+     * @param in Input stream from a text file containing planetary data
+     * @return A Planet instance with the properties obtained from a text file
+     *         for planetary data
+     */
+    public static Planet getPlanet(In in) {
+
+        ParticleStore particle = new ParticleStore(1);
+        readParticle(in, particle);
+
+        return particle.getPlanet(0);
+
+    }
+
+    /*
+     * Reads a line of planetary data from a text file and adds the particle it
+     * describes to a store, skipping blank lines. Values may be separated by
+     * any whitespace. A seventh value, if there is one, is the particle's
+     * collision radius
+     */
+    private static void readParticle(In in, ParticleStore particles) {
+
+        String data = in.readLine();
+        while (data.isBlank()) {
+            data = in.readLine();
+        }
+        String[] dataValues = data.strip().split("\\s+");
+
+        double x = Double.valueOf(dataValues[0]);
+        double y = Double.valueOf(dataValues[1]);
+        double xVelo = Double.valueOf(dataValues[2]);
+        double yVelo = Double.valueOf(dataValues[3]);
+        double mass = Double.valueOf(dataValues[4]);
+        String img = dataValues[5];
+
+        int i = particles.add(x, y, xVelo, yVelo, mass, img);
+        if (dataValues.length > 6) {
+            particles.setRadius(i, Double.valueOf(dataValues[6]));
+        }
+
+    }
+
+    /**
+     * Build the universe for the simulation using a text file of data for a
+     * particular simulation
+     * 
+     * @param in Input stream from a text file containing data for a particular
+     *            simulation
+     * @return An array of Planet objects within the universe that will be
+     *         involved in the simulation
+     */
+    public static Planet[] buildUniverse(In in) {
+
+        return buildParticles(in).toPlanets();
+
+    }
+
+    /**
+     * Build the particles of the universe for the simulation using a text file
+     * of data for a particular simulation
+     * 
+     * @param in Input stream from a text file containing data for a particular
+     *            simulation
+     * @return A store holding the particles within the universe that will be
+     *         involved in the simulation
+     */
+    public static ParticleStore buildParticles(In in) {
+
+        BinaryUniverse universe = readUniverse(in);
+        universeSize = universe.getRadius();
+        universeTime = universe.getTime();
+
+        return universe.getParticles();
+
+    }
+
+    /*
+     * Reads a universe from a text file of data, at simulation time zero
+     */
+    private static BinaryUniverse readUniverse(In in) {
+
+        int n = in.readInt();
+        double radius = in.readDouble();
+        ParticleStore particles = new ParticleStore(n);
+
+        for (int i = 0; i < n; i++) {
+            readParticle(in, particles);
+        }
+
+        in.close();
+
+        return new BinaryUniverse(particles, radius, 0.0);
+
+    }
+
+    /**
+     * Build the particles of the universe for the simulation from a data file,
+     * either a text data file or a binary universe file
+     * 
+     * @param fileName The name of the data file
+     * @return A store holding the particles within the universe that will be
+     *         involved in the simulation
+     * @throws IOException if the data file cannot be read or parsed
+     */
+    public static ParticleStore loadParticles(String fileName) throws IOException {
+
+        BinaryUniverse universe = readUniverse(fileName);
+        universeSize = universe.getRadius();
+        universeTime = universe.getTime();
+
+        return universe.getParticles();
+
+    }
+
+    /**
+     * Read a universe from a data file, either a text data file, which is
+     * parsed by a UniverseParser, or a binary universe file. Unlike
+     * loadParticles, nothing about the universe is remembered, so universes
+     * can be read on several threads at once
+     * 
+     * @param fileName The name of the data file
+     * @return The particles of the universe with its radius and the simulation
+     *         time it was saved at, zero for a text data file
+     * @throws IOException if the data file cannot be read or parsed
+     */
+    public static BinaryUniverse readUniverse(String fileName) throws IOException {
+
+        if (!BinaryUniverse.isBinary(fileName)) {
+            return UniverseParser.parse(Paths.get(fileName));
+        }
+
+        return BinaryUniverse.read(Paths.get(fileName));
+
+    }
+
+    /**
+     * Get the radius of the universe that was last built
+     * 
+     * @return The radius of the universe
+     */
+    public static double getUniverseSize() {
+        return universeSize;
+    }
+
+    /**
+     * Get the simulation time of the universe that was last built, which is
+     * zero unless it was loaded from a checkpoint
+     * 
+     * @return The simulation time the universe is at
+     */
+    public static double getUniverseTime() {
+        return universeTime;
+    }
+
+    /**
+     * Set how the gravitational forces acting on the particles are calculated
+     * in the following simulations
+     * 
+     * @param engine The force engine to use
+     */
+    public static void setForceEngine(ForceEngine engine) {
+        forces = engine;
+    }
+
+    /**
+     * Set how the particles are moved through time in the following
+     * simulations
+     * 
+     * @param method The integrator to use
+     */
+    public static void setIntegrator(Integrator method) {
+        integrator = method;
+    }
+
+    /**
+     * Set the merger handling collisions after every step of the following
+     * simulations
+     * 
+     * @param merger The collision merger to use, or null to let particles
+     *            pass through each other
+     */
+    public static void setCollisions(CollisionMerger merger) {
+        collisions = merger;
+    }
+
+    /**
+     * Set the recorder told about every step of the following simulations
+     * 
+     * @param trajectory The recorder to use, or null to record nothing
+     */
+    public static void setRecorder(TrajectoryRecorder trajectory) {
+        recorder = trajectory;
+    }
+
+    /**
+     * Set the display the following simulations are shown on, instead of the
+     * one provided by the front end module
+     * 
+     * @param view The display to use
+     */
+    public static void setDisplay(UniverseDisplay view) {
+        display = view;
+    }
+
+    /*
+     * Finds the display provided by the front end module if none was set
+     */
+    private static UniverseDisplay getDisplay() {
+
+        if (display == null) {
+            display = ServiceLoader.load(UniverseDisplay.class).findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No display is available, run the simulation with " + SimulationOptions.HEADLESS));
+        }
+
+        return display;
+
+    }
+
+    /*
+     * Prints how closely the forces of the fast multipole method, the
+     * particle mesh or mixed precision match double precision direct
+     * summation on a sample of the particles, as it depends on the universe
+     * as well as the settings of the engine
+     */
+    private static void reportAccuracy(SimulationOptions options, Simulation simulation) {
+
+        boolean mixed = options.getPrecision().equals(SimulationOptions.MIXED_PRECISION);
+        String engine = mixed ? "mixed precision" : options.getForces();
+        if (!mixed && !engine.equals(SimulationOptions.FMM_FORCES) && !engine.equals(SimulationOptions.PM_FORCES)
+                && !engine.equals(SimulationOptions.P3M_FORCES)) {
+            return;
+        }
+
+        ForceAccuracy accuracy = ForceAccuracy.measure(simulation.getParticles(), simulation.getForceEngine(), options.getSoftening(), ACCURACY_SAMPLES);
+        System.err.println(String.format("Forces of the %s engine differ from direct summation by %.2e rms, %.2e at most, over %d particles.", engine,
+                accuracy.getRmsError(), accuracy.getMaxError(), accuracy.getSampleSize()));
+
+    }
+
+    /*
+     * Builds a simulation of the universe that was last built, moved by the
+     * force engine, integrator, collision merger and recorder that were set
+     */
+    private static Simulation lastUniverse(ParticleStore particles) {
+
+        Simulation simulation = new Simulation(particles, universeSize, universeTime, forces, integrator, collisions);
+        simulation.setRecorder(recorder);
+
+        return simulation;
+
+    }
+
+    /**
+     * Runs the Nbodies simulation for a given universe
+     * 
+     * @param totalTime The total time of the simulation
+     * @param dt The amount of time each simulation step will take
+     * @param planets The array of Planets that will be involved in the
+     *            simulation
+     * @throws InterruptedException if interrupted while waiting for the last
+     *             frame to be drawn
+     * @throws IllegalStateException if no display is available, or a
+     *             collision merger is set, as merging particles leaves the
+     *             planets viewing the wrong ones
+     */
+    public static void runSimulation(double totalTime, double dt, Planet[] planets) throws InterruptedException {
+
+        requireNoCollisions();
+        runSimulation(totalTime, dt, ParticleStore.of(planets));
+
+    }
+
+    /**
+     * Runs the Nbodies simulation for a given universe. The universe is shown
+     * on the display from snapshots the simulation publishes after every step,
+     * so the simulation runs as fast as it would headless and the display
+     * shows the newest state each frame
+     * 
+     * @param totalTime The total time of the simulation
+     * @param dt The amount of time each simulation step will take
+     * @param particles The particles that will be involved in the simulation
+     * @throws InterruptedException if interrupted while waiting for the last
+     *             frame to be drawn
+     * @throws IllegalStateException if no display is available
+     */
+    public static void runSimulation(double totalTime, double dt, ParticleStore particles) throws InterruptedException {
+
+        lastUniverse(particles).run(totalTime, dt, getDisplay());
+
+    }
+
+    /**
+     * Runs the Nbodies simulation for a given universe without drawing it. No
+     * display is used, so no screen or sound device is needed and the
+     * simulation runs as fast as the particles can be updated
+     * 
+     * @param totalTime The total time of the simulation
+     * @param dt The amount of time each simulation step will take
+     * @param planets The array of Planets that will be involved in the
+     *            simulation
+     * @throws IllegalStateException if a collision merger is set, as merging
+     *             particles leaves the planets viewing the wrong ones
+     */
+    public static void runHeadless(double totalTime, double dt, Planet[] planets) {
+
+        requireNoCollisions();
+        runHeadless(totalTime, dt, ParticleStore.of(planets));
+
+    }
+
+    /*
+     * Refuses to run planets while collisions are merged: merging shrinks the
+     * store behind the planets, which keep the indexes they had, so they must
+     * be run and printed as a ParticleStore instead
+     */
+    private static void requireNoCollisions() {
+
+        if (collisions != null) {
+            throw new IllegalStateException("Collisions are only supported for simulations of a ParticleStore");
+        }
+    }
+
+    /**
+     * Runs the Nbodies simulation for a given universe without drawing it. No
+     * display is used, so no screen or sound device is needed and the
+     * simulation runs as fast as the particles can be updated
+     * 
+     * @param totalTime The total time of the simulation
+     * @param dt The amount of time each simulation step will take
+     * @param particles The particles that will be involved in the simulation
+     */
+    public static void runHeadless(double totalTime, double dt, ParticleStore particles) {
+        lastUniverse(particles).runHeadless(totalTime, dt);
+    }
+
+    /**
+     * After the simulation has completed, print to standard output the updated
+     * data for each particle in the plane
+     * 
+     * @param planets The array of Planets that was involved in the simulation
+     * @throws IllegalArgumentException if a planet views a particle that was
+     *             merged away
+     */
+    public static void simulationOutput(Planet[] planets) {
+        simulationOutput(ParticleStore.of(planets));
+    }
+
+    /**
+     * After the simulation has completed, print to standard output the updated
+     * data for each particle in the plane
+     * 
+     * @param particles The particles that were involved in the simulation
+     */
+    public static void simulationOutput(ParticleStore particles) {
+        printUniverse(particles, universeSize, System.out);
+    }
+
+    /**
+     * Print a universe in the format of the text data files: the amount of
+     * particles, the radius of the universe, then a line of data per particle,
+     * ending with the particle's collision radius if it has one. The universe
+     * is written by a UniverseWriter in large blocks
+     * 
+     * @param particles The particles of the universe
+     * @param radius The radius of the universe
+     * @param out The stream to print to
+     */
+    public static void printUniverse(ParticleStore particles, double radius, PrintStream out) {
+        try {
+            new UniverseWriter(out).write(particles, radius);
+        } catch (IOException e) {
+            // a PrintStream never throws, it records the error for checkError
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void main(String[] args) {
+
+        SimulationOptions options = null;
+        try {
+            options = SimulationOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage() + "\nUsage: java Nbody [--headless] [--forces=direct|tiled|vector|barnes-hut|fmm|pm|p3m] [--theta=<angle>] [--order=<p>] [--mesh=<nodes>] [--precision=double|mixed] [--threads=<n>] [--softening=<length>] [--integrator=euler|leapfrog|block] [--block-levels=<n>] [--eta=<accuracy>] [--encounters=<distance>] [--encounter-steps=<n>] [--collisions[=<radius>]] [--perturb=<fraction>] [--seed=<n>] [--trajectory=<file>] [--record-every=<steps>] [--checkpoint=<file>] [--checkpoint-every=<steps>] [--reorder=<steps>] <time> <time step> <universe file>");
+            System.exit(EXIT_FAILURE);
+        }
+
+        if (!options.isHeadless()) {
+            try {
+                getDisplay();
+            } catch (IllegalStateException e) {
+                System.out.println(e.getMessage());
+                System.exit(EXIT_FAILURE);
+            }
+        }
+
+        try (Simulation simulation = Simulation.load(options)) {
+            reportAccuracy(options, simulation);
+            // a universe loaded from a checkpoint only runs for the time it has left
+            double remainingTime = options.getTotalTime() - simulation.getTime();
+            try (TrajectoryRecorder trajectory = simulation.createRecorder(options)) {
+                simulation.setRecorder(trajectory);
+                if (options.isHeadless()) {
+                    simulation.runHeadless(remainingTime, options.getTimeStep());
+                } else {
+                    simulation.run(remainingTime, options.getTimeStep(), getDisplay());
+                }
+                if (trajectory != null) {
+                    trajectory.checkpoint(simulation.getParticles());
+                }
+            }
+            simulation.printUniverse(System.out);
+        } catch (IOException | UncheckedIOException e) {
+            // the universe, trajectory or checkpoint file could not be used
+            System.out.println(e instanceof NoSuchFileException ? e.getMessage() + " does not exist" : e.getMessage());
+            System.exit(EXIT_FAILURE);
+        } catch (Exception e) {
+            System.out.println("Faulty command line arguments were supplied.");
+            System.exit(EXIT_FAILURE);
+        }
+
+        System.exit(EXIT_SUCCESS);
+
+    }
+
+}
@@ -0,0 +1,209 @@
+package nbodies;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Force engine that divides the particles into chunks and accelerates the
+ * chunks on a fixed set of worker threads, with the calling thread working
+ * alongside them. Every particle's acceleration is calculated by the wrapped
+ * engine in exactly the same way as when it runs alone, so the results are
+ * identical to the wrapped engine's for any amount of threads.
+ * <p>
+ * Threads claim chunks from a shared counter until none are left, which
+ * balances the load, and wait for the next step by parking. Neither claiming
+ * nor waiting allocates, so a step allocates nothing
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class ParallelForces implements ForceEngine {
+
+    private static final int CHUNKS_PER_THREAD = 4; // more chunks than threads to balance the load
+    private static final int MIN_CHUNK = 16; // smallest range worth handing to a thread
+    private static final int SPINS = 1 << 12; // times a worker checks for a new step before parking
+
+    static final String THREAD_NAME = "forces-"; // start of the name of every worker thread
+
+    private final RangeForceEngine engine; // calculates the accelerations of each chunk
+    private final int threads; // amount of threads calculating, the calling thread included
+    private final int maxChunks; // most chunks a step is divided into
+    private final Thread[] workers; // threads helping the calling thread
+    private final AtomicLong claims = new AtomicLong(); // step number in the high half, next unclaimed chunk in the low half
+    private final AtomicInteger unfinished = new AtomicInteger(); // chunks of the current step not yet accelerated
+    private volatile int stepNumber = 0; // increased to start every step
+    private volatile boolean running = true; // cleared to stop the workers
+    private volatile Thread caller; // thread waiting for the current step
+    private volatile Throwable failure; // first error thrown while accelerating a chunk
+    private ParticleStore current; // particles of the step being run
+    private int[] currentActive; // particles to accelerate, null for every particle
+    private int currentCount; // amount of particles to accelerate
+    private int chunkCount; // amount of chunks in the current step
+
+    /**
+     * Constructs a new parallel force engine
+     *
+     * @param rangeEngine The engine calculating the accelerations
+     * @param threads The amount of threads to calculate with
+     * @throws IllegalArgumentException if the amount of threads is less than 1
+     */
+    public ParallelForces(RangeForceEngine rangeEngine, int threads) {
+
+        if (threads < 1) {
+            throw new IllegalArgumentException("at least one thread is needed");
+        }
+
+        engine = rangeEngine;
+        this.threads = threads;
+        maxChunks = threads * CHUNKS_PER_THREAD;
+        workers = new Thread[threads - 1];
+        for (int w = 0; w < workers.length; w++) {
+            workers[w] = new Thread(this::work, THREAD_NAME + (w + 1));
+            workers[w].setDaemon(true);
+            workers[w].start();
+        }
+
+    }
+
+    /**
+     * Get the amount of threads the accelerations are calculated with
+     *
+     * @return The amount of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public void computeAccelerations(ParticleStore particles) {
+
+        computeAccelerations(particles, null, particles.size());
+
+    }
+
+    @Override
+    public void computeAccelerations(ParticleStore particles, int[] active, int count) {
+
+        engine.prepare(particles);
+
+        current = particles;
+        currentActive = active;
+        currentCount = count;
+        chunkCount = Math.max(1, Math.min(maxChunks, count / MIN_CHUNK));
+        unfinished.set(chunkCount);
+        caller = Thread.currentThread();
+
+        // publishing the claims makes the fields above visible to the workers
+        int number = stepNumber + 1;
+        claims.set((long) number << 32);
+        stepNumber = number;
+        if (chunkCount > 1) {
+            for (Thread worker : workers) {
+                LockSupport.unpark(worker);
+            }
+        }
+
+        runChunks(number);
+        while (unfinished.get() > 0) {
+            LockSupport.park(this);
+        }
+
+        current = null;
+        currentActive = null;
+
+        Throwable error = failure;
+        if (error != null) {
+            failure = null;
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw (RuntimeException) error;
+        }
+    }
+
+    /**
+     * Stops the threads of this engine once they are idle
+     */
+    public void shutdown() {
+
+        running = false;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /*
+     * Body of every worker thread: waits for each step and helps to run its
+     * chunks
+     */
+    private void work() {
+
+        int seen = 0;
+        int spins = 0;
+
+        while (running) {
+            int number = stepNumber;
+            if (number != seen) {
+                seen = number;
+                spins = 0;
+                runChunks(number);
+            } else if (spins < SPINS) {
+                spins++;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    /*
+     * Claims and accelerates chunks of a step until none are left. Claims carry
+     * the step number, so a thread still finishing an earlier step never claims
+     * a chunk of a later one
+     */
+    private void runChunks(int number) {
+
+        while (true) {
+            long claim = claims.get();
+            int chunk = (int) claim;
+            if ((int) (claim >>> 32) != number || chunk >= chunkCount) {
+                return;
+            }
+            if (!claims.compareAndSet(claim, claim + 1)) {
+                continue;
+            }
+
+            try {
+                accelerate(chunk);
+            } catch (RuntimeException | Error e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+
+            if (unfinished.decrementAndGet() == 0) {
+                LockSupport.unpark(caller);
+            }
+        }
+    }
+
+    /*
+     * Accelerates one range of the particles, or of the active particles
+     */
+    private void accelerate(int chunk) {
+
+        int from = (int) ((long) currentCount * chunk / chunkCount);
+        int to = (int) ((long) currentCount * (chunk + 1) / chunkCount);
+
+        if (currentActive == null) {
+            engine.accelerate(current, from, to);
+        } else {
+            for (int k = from; k < to; k++) {
+                engine.accelerate(current, currentActive[k], currentActive[k] + 1);
+            }
+        }
+    }
+
+}
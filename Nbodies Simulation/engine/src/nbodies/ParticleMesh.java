@@ -0,0 +1,359 @@
+package nbodies;
+
+import java.util.Arrays;
+
+/**
+ * Force engine that calculates the pull of the particles on a square mesh. The
+ * mass of every particle is shared out among the four mesh nodes around it by
+ * cloud in cell weighting, the accelerations at the nodes are found by
+ * convolving the masses with the pull of a unit mass through fast Fourier
+ * transforms, and each particle takes the accelerations of its four nodes with
+ * the same weights. A step costs O(N + M^2 log M) for a mesh of M by M nodes,
+ * whatever the amount of particles.
+ * <p>
+ * The pull between particles falls off with the square of the distance, so
+ * the masses are convolved with that pull directly rather than solving the 2D
+ * Poisson equation, whose pull falls off with the distance. The mesh is zero
+ * padded to twice its width, so the convolution is that of an isolated
+ * universe rather than a periodic one. The pull is split at a scale of a mesh
+ * cell with a Gaussian: the mesh carries the smooth, long range part, which
+ * it resolves well, and leaves out the rest, so particles closer than a few
+ * cells pull each other less than they should. With the short range
+ * correction, the particle-particle particle-mesh method, the rest of the
+ * pull is added directly between particles closer than the cut off, found
+ * with a chaining mesh of cells as wide as the cut off; softening only
+ * applies to this direct pull.
+ * <p>
+ * The mesh spans the diameter of the universe around the origin, with a cell
+ * to spare on each side. When a particle leaves it, the mesh doubles its span
+ * at the same amount of nodes, and never shrinks again. Nothing is allocated
+ * once the particles fit
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class ParticleMesh implements ForceEngine {
+
+    public static final int DEFAULT_MESH = 128;
+    public static final int MIN_MESH = 8;
+
+    private static final double SPLIT_CELLS = 1.25; // scale of the Gaussian splitting the pull, in mesh cells
+    private static final double CUT_OFF_CELLS = 5.0; // distance the short range pull is cut off at, in mesh cells
+    private static final double SERIES_BOUND = 0.5; // long range pull is summed as a series closer than this, in split scales
+    private static final int TABLE_SIZE = 1024; // intervals the long range pull is tabulated in up to the cut off
+    private static final double TWO_OVER_ROOT_PI = 2.0 / Math.sqrt(Math.PI);
+    private static final int NONE = -1;
+
+    private final int cells; // mesh nodes along each side
+    private final int padded; // width of the zero padded mesh
+    private final boolean shortRange; // add the short range pull directly
+    private final double softeningSquared; // square of the Plummer softening length
+    private final FastFourierTransform transform; // transforms of the padded mesh
+    private final double[] kernelRe; // transform of the x acceleration a unit mass causes around it
+    private final double[] kernelIm; // transform of the y acceleration
+    private final double[] meshRe; // masses, then x accelerations of the nodes
+    private final double[] meshIm; // y accelerations of the nodes
+
+    private double span = 0.0; // width of the mesh
+    private double spacing; // distance between mesh nodes
+    private double split; // scale of the Gaussian splitting the pull
+
+    // chaining mesh of the short range pull
+    private final int chains; // chaining cells along each side
+    private final int[] head; // first particle of each chaining cell
+    private int[] next = new int[0]; // next particle in the same chaining cell
+    private int[] chain = new int[0]; // chaining cell of each particle
+    private final double[] table = new double[TABLE_SIZE + 1]; // long range pull by squared distance up to the cut off
+    private double tableScale; // table intervals per unit of squared distance
+
+    /**
+     * Constructs a new particle mesh force engine
+     *
+     * @param universeRadius The radius of the universe, the mesh covers at
+     *            least this radius around the origin
+     * @param mesh The amount of mesh nodes along each side, a power of two
+     * @param correction Whether to add the short range pull directly, the
+     *            particle-particle particle-mesh method
+     * @param softening The Plummer softening length of the short range pull,
+     *            0 for Newtonian forces
+     * @throws IllegalArgumentException if the radius is not positive, the mesh
+     *             is not a power of two of at least MIN_MESH or the softening
+     *             length is negative
+     */
+    public ParticleMesh(double universeRadius, int mesh, boolean correction, double softening) {
+
+        if (!(universeRadius > 0.0) || Double.isInfinite(universeRadius)) {
+            throw new IllegalArgumentException("universe radius must be positive");
+        }
+        if (mesh < MIN_MESH || (mesh & (mesh - 1)) != 0) {
+            throw new IllegalArgumentException("mesh must be a power of two of at least " + MIN_MESH);
+        }
+        if (!(softening >= 0.0)) {
+            throw new IllegalArgumentException("softening must not be negative");
+        }
+
+        cells = mesh;
+        padded = 2 * mesh;
+        shortRange = correction;
+        softeningSquared = softening * softening;
+        transform = new FastFourierTransform(padded);
+        kernelRe = new double[padded * padded];
+        kernelIm = new double[padded * padded];
+        meshRe = new double[padded * padded];
+        meshIm = new double[padded * padded];
+
+        chains = (int) (cells / CUT_OFF_CELLS);
+        head = shortRange ? new int[chains * chains] : new int[0];
+
+        resize(2.0 * universeRadius * cells / (cells - 2));
+
+    }
+
+    /**
+     * Get the amount of mesh nodes along each side
+     *
+     * @return The width of the mesh in nodes
+     */
+    public int getMesh() {
+        return cells;
+    }
+
+    /**
+     * Whether the short range pull is added directly
+     *
+     * @return True for the particle-particle particle-mesh method
+     */
+    public boolean isShortRange() {
+        return shortRange;
+    }
+
+    @Override
+    public void computeAccelerations(ParticleStore particles) {
+
+        int n = particles.size();
+        double[] x = particles.x;
+        double[] y = particles.y;
+
+        double extent = 0.0;
+        for (int i = 0; i < n; i++) {
+            extent = Math.max(extent, Math.max(Math.abs(x[i]), Math.abs(y[i])));
+        }
+        // the last node of each row and column has no cell after it to share out into
+        while (extent >= span / 2.0 - spacing) {
+            resize(2.0 * span);
+        }
+
+        Arrays.fill(meshRe, 0.0);
+        Arrays.fill(meshIm, 0.0);
+
+        double corner = -span / 2.0;
+        for (int i = 0; i < n; i++) {
+            double u = (x[i] - corner) / spacing;
+            double v = (y[i] - corner) / spacing;
+            int column = (int) u;
+            int row = (int) v;
+            double right = u - column;
+            double up = v - row;
+            double m = particles.mass[i];
+            int node = row * padded + column;
+            meshRe[node] += m * (1.0 - right) * (1.0 - up);
+            meshRe[node + 1] += m * right * (1.0 - up);
+            meshRe[node + padded] += m * (1.0 - right) * up;
+            meshRe[node + padded + 1] += m * right * up;
+        }
+
+        transform.forward(meshRe, meshIm, cells);
+
+        // the masses are real, so the x accelerations come back as the real part and the y accelerations as the imaginary part
+        for (int k = 0; k < meshRe.length; k++) {
+            double re = meshRe[k];
+            double im = meshIm[k];
+            meshRe[k] = re * kernelRe[k] - im * kernelIm[k];
+            meshIm[k] = re * kernelIm[k] + im * kernelRe[k];
+        }
+
+        transform.inverse(meshRe, meshIm, cells);
+
+        for (int i = 0; i < n; i++) {
+            double u = (x[i] - corner) / spacing;
+            double v = (y[i] - corner) / spacing;
+            int column = (int) u;
+            int row = (int) v;
+            double right = u - column;
+            double up = v - row;
+            int node = row * padded + column;
+            double w00 = (1.0 - right) * (1.0 - up);
+            double w10 = right * (1.0 - up);
+            double w01 = (1.0 - right) * up;
+            double w11 = right * up;
+            particles.ax[i] = w00 * meshRe[node] + w10 * meshRe[node + 1] + w01 * meshRe[node + padded] + w11 * meshRe[node + padded + 1];
+            particles.ay[i] = w00 * meshIm[node] + w10 * meshIm[node + 1] + w01 * meshIm[node + padded] + w11 * meshIm[node + padded + 1];
+        }
+
+        if (shortRange) {
+            addShortRange(particles);
+        }
+    }
+
+    /*
+     * Sets the width of the mesh and calculates the transform of the
+     * accelerations a unit mass causes at every offset between nodes
+     */
+    private void resize(double width) {
+
+        span = width;
+        spacing = span / cells;
+        split = SPLIT_CELLS * spacing;
+
+        Arrays.fill(kernelRe, 0.0);
+        Arrays.fill(kernelIm, 0.0);
+
+        // offsets below 0 wrap around to the end of the padded mesh
+        int mask = padded - 1;
+        for (int row = 1 - cells; row < cells; row++) {
+            for (int column = 1 - cells; column < cells; column++) {
+                if (row == 0 && column == 0) {
+                    continue;
+                }
+                double deltaX = column * spacing;
+                double deltaY = row * spacing;
+                double pull = -Planet.GRAVITATIONAL_CONSTANT * longRange(Math.sqrt(deltaX * deltaX + deltaY * deltaY));
+                int k = (row & mask) * padded + (column & mask);
+                kernelRe[k] = pull * deltaX;
+                kernelIm[k] = pull * deltaY;
+            }
+        }
+
+        transform.forward(kernelRe, kernelIm, padded);
+
+        // the long range pull is smooth in the squared distance, so the short range pull interpolates it
+        double cutOff = CUT_OFF_CELLS * spacing;
+        tableScale = TABLE_SIZE / (cutOff * cutOff);
+        for (int k = 0; k <= TABLE_SIZE; k++) {
+            table[k] = longRange(Math.sqrt(k / tableScale));
+        }
+
+    }
+
+    /*
+     * Long range part of the pull of a unit mass at a distance, divided by
+     * G and the cube of the distance: the fraction of it inside a Gaussian
+     * of the split scale. Close in, where that fraction is the difference of
+     * two nearly equal numbers, it is summed as a series instead
+     */
+    private double longRange(double r) {
+
+        double u = r / split;
+
+        if (u < SERIES_BOUND) {
+            double u2 = u * u;
+            double series = 2.0 / 3.0 - u2 * (2.0 / 5.0 - u2 * (1.0 / 7.0 - u2 * (1.0 / 27.0 - u2 * (1.0 / 132.0 - u2 * (1.0 / 780.0 - u2 / 5400.0)))));
+            return TWO_OVER_ROOT_PI * series / (split * split * split);
+        }
+
+        double fraction = 1.0 - erfc(u) - TWO_OVER_ROOT_PI * u * Math.exp(-u * u);
+        return fraction / (r * r * r);
+
+    }
+
+    /*
+     * Complementary error function of a number that is not negative, with a
+     * relative error below 1.2e-7, from Numerical Recipes
+     */
+    private static double erfc(double z) {
+
+        double t = 1.0 / (1.0 + 0.5 * z);
+        return t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418 + t * (-0.18628806
+                + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587 + t * (-0.82215223 + t * 0.17087277)))))))));
+
+    }
+
+    /*
+     * Adds the short range pull, the softened pull less its long range part,
+     * between every pair of particles closer than the cut off. The long range
+     * part is interpolated from a table. Each chaining
+     * cell is paired with itself and the four cells after it, so every pair
+     * is visited once
+     */
+    private void addShortRange(ParticleStore particles) {
+
+        int n = particles.size();
+        double[] x = particles.x;
+        double[] y = particles.y;
+
+        if (next.length < n) {
+            next = new int[n];
+            chain = new int[n];
+        }
+
+        Arrays.fill(head, NONE);
+        double width = span / chains;
+        double corner = -span / 2.0;
+        for (int i = n - 1; i >= 0; i--) {
+            int column = Math.min(chains - 1, (int) ((x[i] - corner) / width));
+            int row = Math.min(chains - 1, (int) ((y[i] - corner) / width));
+            chain[i] = row * chains + column;
+            next[i] = head[chain[i]];
+            head[chain[i]] = i;
+        }
+
+        double cutOffSquared = CUT_OFF_CELLS * spacing * CUT_OFF_CELLS * spacing;
+        for (int row = 0; row < chains; row++) {
+            for (int column = 0; column < chains; column++) {
+                int cell = row * chains + column;
+                for (int i = head[cell]; i != NONE; i = next[i]) {
+                    pullShortRange(particles, i, next[i], cutOffSquared);
+                    if (column + 1 < chains) {
+                        pullShortRange(particles, i, head[cell + 1], cutOffSquared);
+                    }
+                    if (row + 1 < chains) {
+                        if (column > 0) {
+                            pullShortRange(particles, i, head[cell + chains - 1], cutOffSquared);
+                        }
+                        pullShortRange(particles, i, head[cell + chains], cutOffSquared);
+                        if (column + 1 < chains) {
+                            pullShortRange(particles, i, head[cell + chains + 1], cutOffSquared);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Adds the short range pull between a particle and every particle of a
+     * chain, from the given one on, that is closer than the cut off
+     */
+    private void pullShortRange(ParticleStore particles, int i, int first, double cutOffSquared) {
+
+        double xi = particles.x[i];
+        double yi = particles.y[i];
+        double massI = particles.mass[i];
+        double xAccel = 0.0;
+        double yAccel = 0.0;
+
+        for (int j = first; j != NONE; j = next[j]) {
+            double deltaX = particles.x[j] - xi;
+            double deltaY = particles.y[j] - yi;
+            double distSquared = deltaX * deltaX + deltaY * deltaY;
+            if (distSquared >= cutOffSquared) {
+                continue;
+            }
+            double position = distSquared * tableScale;
+            int k = (int) position;
+            double longPull = table[k] + (position - k) * (table[k + 1] - table[k]);
+            double softened = distSquared + softeningSquared;
+            double pull = Planet.GRAVITATIONAL_CONSTANT * (1.0 / (softened * Math.sqrt(softened)) - longPull);
+            xAccel += particles.mass[j] * pull * deltaX;
+            yAccel += particles.mass[j] * pull * deltaY;
+            particles.ax[j] -= massI * pull * deltaX;
+            particles.ay[j] -= massI * pull * deltaY;
+        }
+
+        particles.ax[i] += xAccel;
+        particles.ay[i] += yAccel;
+
+    }
+
+}
@@ -0,0 +1,498 @@
+package nbodies;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores the state of every particle in a universe in contiguous primitive
+ * arrays, one array per property, so that the force and update loops of the
+ * simulation stream through memory instead of chasing Planet references. Image
+ * file names are interned into a table and each particle only keeps the index
+ * of its image. Planet instances obtained from a store are views of a single
+ * particle in it
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class ParticleStore {
+
+    // particle state, indexed by particle, only the first size entries are used
+    final double[] x; // x coordinates
+    final double[] y; // y coordinates
+    final double[] vx; // x velocities
+    final double[] vy; // y velocities
+    final double[] ax; // x accelerations
+    final double[] ay; // y accelerations
+    final double[] mass; // masses
+    final double[] radius; // collision radii, 0 if a particle has none
+    final int[] image; // index of each particle's image in the image table
+    final int[] id; // order each particle was loaded or added in, kept when particles are rearranged
+
+    private int size = 0; // amount of particles in the store
+    private int nextId = 0; // id of the next particle added
+    private String[] images = new String[4]; // table of distinct image files
+    private int imageCount = 0; // amount of distinct image files
+    private final Map<String, Integer> imageIndex = new HashMap<>(); // image file to table index
+
+    /**
+     * Constructs a new, empty store
+     *
+     * @param capacity The amount of particles the store can hold
+     */
+    public ParticleStore(int capacity) {
+
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        ax = new double[capacity];
+        ay = new double[capacity];
+        mass = new double[capacity];
+        radius = new double[capacity];
+        image = new int[capacity];
+        id = new int[capacity];
+
+    }
+
+    /**
+     * Builds a store holding the particles of the given planets. Afterwards
+     * every planet is a view of its particle in the returned store, so changes
+     * made by a simulation running against the store are seen through the
+     * planets. If the planets already are, in order, every particle of a
+     * single store then that store is returned
+     *
+     * @param planets The planets whose particles the store should hold
+     * @return A store holding the particles of the planets
+     * @throws IllegalArgumentException if a planet views a particle that has
+     *             been removed from its store, as merging collided particles
+     *             does
+     */
+    public static ParticleStore of(Planet[] planets) {
+
+        for (Planet p : planets) {
+            if (p.getIndex() >= p.getStore().size()) {
+                throw new IllegalArgumentException("planet " + p.getIndex() + " views a particle removed from its store");
+            }
+        }
+
+        ParticleStore shared = planets.length > 0 ? planets[0].getStore() : null;
+        boolean isShared = shared != null && shared.size() == planets.length;
+        for (int i = 0; isShared && i < planets.length; i++) {
+            isShared = planets[i].getStore() == shared && planets[i].getIndex() == i;
+        }
+
+        if (isShared) {
+            return shared;
+        }
+
+        ParticleStore particles = new ParticleStore(planets.length);
+        for (Planet p : planets) {
+            int i = particles.add(p.getX(), p.getY(), p.getXVelocity(), p.getYVelocity(), p.getMass(), p.getImg());
+            particles.ax[i] = p.getXAccel();
+            particles.ay[i] = p.getYAccel();
+            p.bind(particles, i);
+        }
+
+        return particles;
+
+    }
+
+    /**
+     * Adds a particle to the store
+     *
+     * @param xCoord The initial x coordinate
+     * @param yCoord The initial y coordinate
+     * @param xVelo The initial x velocity
+     * @param yVelo The initial y velocity
+     * @param newMass The mass of the particle
+     * @param newImageFile The image file to associate with the particle
+     * @return The index of the new particle
+     * @throws IllegalStateException if the store is full
+     */
+    public int add(double xCoord, double yCoord, double xVelo, double yVelo, double newMass, String newImageFile) {
+
+        if (size == x.length) {
+            throw new IllegalStateException("particle store is full");
+        }
+
+        int i = size++;
+        x[i] = xCoord;
+        y[i] = yCoord;
+        vx[i] = xVelo;
+        vy[i] = yVelo;
+        ax[i] = 0.0;
+        ay[i] = 0.0;
+        mass[i] = newMass;
+        radius[i] = 0.0;
+        image[i] = internImage(newImageFile);
+        id[i] = nextId++;
+
+        return i;
+
+    }
+
+    /*
+     * Makes the store hold a given amount of particles with the given image
+     * table, so the particle arrays can be filled in directly. Image indexes
+     * already in the store must be valid for the new table. The particles are
+     * given ids in store order
+     */
+    void load(int count, String[] imageTable) {
+
+        if (count < 0 || count > x.length) {
+            throw new IllegalArgumentException("particle store cannot hold " + count + " particles");
+        }
+
+        images = new String[Math.max(4, imageTable.length)];
+        imageCount = 0;
+        imageIndex.clear();
+        for (String imageFile : imageTable) {
+            images[imageCount] = imageFile;
+            imageIndex.putIfAbsent(imageFile, imageCount);
+            imageCount++;
+        }
+
+        for (int i = 0; i < count; i++) {
+            id[i] = i;
+        }
+        size = count;
+        nextId = count;
+
+    }
+
+    /*
+     * Makes particles added later take ids after the largest id held, once
+     * the ids of loaded particles have been filled in directly
+     */
+    void idsLoaded() {
+
+        nextId = 0;
+        for (int i = 0; i < size; i++) {
+            nextId = Math.max(nextId, id[i] + 1);
+        }
+    }
+
+    /*
+     * Makes this store a copy of the particles and image table of another
+     * store. The other store must not hold more particles than this one can
+     */
+    void copyFrom(ParticleStore other) {
+
+        int n = other.size;
+        System.arraycopy(other.x, 0, x, 0, n);
+        System.arraycopy(other.y, 0, y, 0, n);
+        System.arraycopy(other.vx, 0, vx, 0, n);
+        System.arraycopy(other.vy, 0, vy, 0, n);
+        System.arraycopy(other.ax, 0, ax, 0, n);
+        System.arraycopy(other.ay, 0, ay, 0, n);
+        System.arraycopy(other.mass, 0, mass, 0, n);
+        System.arraycopy(other.radius, 0, radius, 0, n);
+        System.arraycopy(other.image, 0, image, 0, n);
+
+        if (!Arrays.equals(images, 0, imageCount, other.images, 0, other.imageCount)) {
+            load(n, Arrays.copyOf(other.images, other.imageCount));
+        }
+        System.arraycopy(other.id, 0, id, 0, n);
+        size = n;
+        nextId = other.nextId;
+
+    }
+
+    /*
+     * Removes the marked particles from the store. The particles left keep
+     * their order but move down to fill the gaps
+     */
+    void remove(boolean[] removed) {
+
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            x[kept] = x[i];
+            y[kept] = y[i];
+            vx[kept] = vx[i];
+            vy[kept] = vy[i];
+            ax[kept] = ax[i];
+            ay[kept] = ay[i];
+            mass[kept] = mass[i];
+            radius[kept] = radius[i];
+            image[kept] = image[i];
+            id[kept] = id[i];
+            kept++;
+        }
+
+        size = kept;
+
+    }
+
+    /*
+     * Rearranges the particles so the particle at each index is the one that
+     * was at the index given for it. The scratch arrays must hold at least as
+     * many entries as there are particles
+     */
+    void permute(int[] from, double[] doubles, int[] ints) {
+
+        permute(x, from, doubles);
+        permute(y, from, doubles);
+        permute(vx, from, doubles);
+        permute(vy, from, doubles);
+        permute(ax, from, doubles);
+        permute(ay, from, doubles);
+        permute(mass, from, doubles);
+        permute(radius, from, doubles);
+
+        for (int i = 0; i < size; i++) {
+            ints[i] = image[from[i]];
+        }
+        System.arraycopy(ints, 0, image, 0, size);
+        for (int i = 0; i < size; i++) {
+            ints[i] = id[from[i]];
+        }
+        System.arraycopy(ints, 0, id, 0, size);
+
+    }
+
+    /*
+     * Rearranges one property of the particles through a scratch array
+     */
+    private void permute(double[] property, int[] from, double[] scratch) {
+
+        for (int i = 0; i < size; i++) {
+            scratch[i] = property[from[i]];
+        }
+        System.arraycopy(scratch, 0, property, 0, size);
+
+    }
+
+    /*
+     * Returns the index of an image file in the image table, adding it to the
+     * table if it is not there yet
+     */
+    private int internImage(String imageFile) {
+
+        Integer index = imageIndex.get(imageFile);
+        if (index != null) {
+            return index;
+        }
+
+        if (imageCount == images.length) {
+            String[] grown = new String[2 * images.length];
+            System.arraycopy(images, 0, grown, 0, imageCount);
+            images = grown;
+        }
+
+        images[imageCount] = imageFile;
+        imageIndex.put(imageFile, imageCount);
+
+        return imageCount++;
+
+    }
+
+    /**
+     * Get the amount of particles in the store
+     *
+     * @return The amount of particles
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the x coordinate of a particle
+     *
+     * @param i The index of the particle
+     * @return The x coordinate of the particle
+     */
+    public double getX(int i) {
+        return x[i];
+    }
+
+    /**
+     * Get the y coordinate of a particle
+     *
+     * @param i The index of the particle
+     * @return The y coordinate of the particle
+     */
+    public double getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * Get the x velocity of a particle
+     *
+     * @param i The index of the particle
+     * @return The x velocity of the particle
+     */
+    public double getXVelocity(int i) {
+        return vx[i];
+    }
+
+    /**
+     * Get the y velocity of a particle
+     *
+     * @param i The index of the particle
+     * @return The y velocity of the particle
+     */
+    public double getYVelocity(int i) {
+        return vy[i];
+    }
+
+    /**
+     * Get the x acceleration of a particle
+     *
+     * @param i The index of the particle
+     * @return The x acceleration of the particle
+     */
+    public double getXAccel(int i) {
+        return ax[i];
+    }
+
+    /**
+     * Get the y acceleration of a particle
+     *
+     * @param i The index of the particle
+     * @return The y acceleration of the particle
+     */
+    public double getYAccel(int i) {
+        return ay[i];
+    }
+
+    /**
+     * Get the mass of a particle
+     *
+     * @param i The index of the particle
+     * @return The mass of the particle
+     */
+    public double getMass(int i) {
+        return mass[i];
+    }
+
+    /**
+     * Get the collision radius of a particle
+     *
+     * @param i The index of the particle
+     * @return The collision radius of the particle, 0 if it has none
+     */
+    public double getRadius(int i) {
+        return radius[i];
+    }
+
+    /**
+     * Set the collision radius of a particle
+     *
+     * @param i The index of the particle
+     * @param collisionRadius The collision radius, 0 for none
+     */
+    public void setRadius(int i, double collisionRadius) {
+        radius[i] = collisionRadius;
+    }
+
+    /**
+     * Get the image file name of a particle
+     *
+     * @param i The index of the particle
+     * @return The image file name associated with the particle
+     */
+    public String getImg(int i) {
+        return images[image[i]];
+    }
+
+    /**
+     * Get the index of a particle's image in the image table
+     *
+     * @param i The index of the particle
+     * @return The index of the particle's image file name
+     */
+    public int getImageIndex(int i) {
+        return image[i];
+    }
+
+    /**
+     * Get the id of a particle, which is its place among the particles in the
+     * order they were loaded or added. Rearranging the particles, as
+     * SpatialOrder does, keeps their ids, and removing particles leaves gaps
+     *
+     * @param i The index of the particle
+     * @return The id of the particle
+     */
+    public int getId(int i) {
+        return id[i];
+    }
+
+    /**
+     * Get the amount of distinct image files used by the particles
+     *
+     * @return The size of the image table
+     */
+    public int getImageCount() {
+        return imageCount;
+    }
+
+    /**
+     * Get an image file name from the image table
+     *
+     * @param index The index of the image in the image table
+     * @return The image file name
+     */
+    public String getImageName(int index) {
+        return images[index];
+    }
+
+    /**
+     * Updates the velocity of every particle by its acceleration over a length
+     * of time
+     *
+     * @param dt The length of time
+     */
+    public void kick(double dt) {
+
+        for (int i = 0; i < size; i++) {
+            vx[i] += dt * ax[i];
+            vy[i] += dt * ay[i];
+        }
+    }
+
+    /**
+     * Updates the position of every particle by its velocity over a length of
+     * time
+     *
+     * @param dt The length of time
+     */
+    public void drift(double dt) {
+
+        for (int i = 0; i < size; i++) {
+            x[i] += dt * vx[i];
+            y[i] += dt * vy[i];
+        }
+    }
+
+    /**
+     * Get a view of a particle in the store
+     *
+     * @param i The index of the particle
+     * @return A Planet backed by the particle
+     */
+    public Planet getPlanet(int i) {
+        return new Planet(this, i);
+    }
+
+    /**
+     * Get views of every particle in the store
+     *
+     * @return An array of Planets backed by the particles, in store order
+     */
+    public Planet[] toPlanets() {
+
+        Planet[] planets = new Planet[size];
+        for (int i = 0; i < size; i++) {
+            planets[i] = getPlanet(i);
+        }
+
+        return planets;
+
+    }
+
+}
@@ -3,7 +3,8 @@ package nbodies;
 /**
  * Data type that represents a particle in the universe. The movement of this
  * particle will be determined by the net gravitational forces acting upon it
- * from other particles within the universe
+ * from other particles within the universe. The state of the particle is held
+ * in a ParticleStore, a Planet is a view of a single particle in its store
  * 
  * @author Peter Swantek
  * @version 1.8
@@ -13,17 +14,8 @@ public final class Planet {
 
     public static final double GRAVITATIONAL_CONSTANT = 6.67e-11;
 
-    private double x; // current x coordinate of the particle
-    private double y; // current y coordinate of the particle
-    private double xVelocity; // velocity of the particle in the x coordinate
-    private double yVelocity; // velocity of the particle in the y coordinate
-    private double xAccel; // acceleration of the particle in the x coordinate
-    private double yAccel; // acceleration of the particle in the y coordinate
-    private double mass; // mass of this particle
-    private String img; // image file associated with this particle
-
-    private double xNetForce = 0.0; // net force acting on this particle in the x coordinate
-    private double yNetForce = 0.0; // net force acting on this particle in the y coordinate
+    private ParticleStore store; // store holding the state of this particle
+    private int index; // index of this particle in the store
 
     /**
      * Constructs a new instance of a Planet in the universe
@@ -37,15 +29,42 @@ public final class Planet {
      */
     public Planet(double xCoord, double yCoord, double xVelo, double yVelo, double newMass, String newImageFile) {
 
-        x = xCoord;
-        y = yCoord;
-        xVelocity = xVelo;
-        yVelocity = yVelo;
-        xAccel = 0.0;
-        yAccel = 0.0;
-        mass = newMass;
-        img = newImageFile;
+        store = new ParticleStore(1);
+        index = store.add(xCoord, yCoord, xVelo, yVelo, newMass, newImageFile);
+
+    }
+
+    /*
+     * Constructs a view of a particle that is held in a store
+     */
+    Planet(ParticleStore particles, int i) {
+
+        bind(particles, i);
+
+    }
+
+    /*
+     * Makes this planet a view of a particle held in a store
+     */
+    void bind(ParticleStore particles, int i) {
+
+        store = particles;
+        index = i;
+
+    }
 
+    /*
+     * Get the store holding the state of this planet
+     */
+    ParticleStore getStore() {
+        return store;
+    }
+
+    /*
+     * Get the index of this planet in its store
+     */
+    int getIndex() {
+        return index;
     }
 
     /**
@@ -54,7 +73,7 @@ public final class Planet {
      * @return The x coordinate of this planet
      */
     public double getX() {
-        return x;
+        return store.x[index];
     }
 
     /**
@@ -63,7 +82,7 @@ public final class Planet {
      * @return The y coordinate of this planet
      */
     public double getY() {
-        return y;
+        return store.y[index];
     }
 
     /**
@@ -72,7 +91,7 @@ public final class Planet {
      * @return The x velocity of this planet
      */
     public double getXVelocity() {
-        return xVelocity;
+        return store.vx[index];
     }
 
     /**
@@ -81,7 +100,7 @@ public final class Planet {
      * @return The y velocity of this planet
      */
     public double getYVelocity() {
-        return yVelocity;
+        return store.vy[index];
     }
 
     /**
@@ -90,7 +109,7 @@ public final class Planet {
      * @return The x acceleration of this planet
      */
     public double getXAccel() {
-        return xAccel;
+        return store.ax[index];
     }
 
     /**
@@ -99,7 +118,7 @@ public final class Planet {
      * @return The y acceleration of this planet
      */
     public double getYAccel() {
-        return yAccel;
+        return store.ay[index];
     }
 
     /**
@@ -108,7 +127,7 @@ public final class Planet {
      * @return The mass of this planet
      */
     public double getMass() {
-        return mass;
+        return store.mass[index];
     }
 
     /**
@@ -117,7 +136,7 @@ public final class Planet {
      * @return The image file name associated with this planet
      */
     public String getImg() {
-        return img;
+        return store.getImg(index);
     }
 
     /**
@@ -126,7 +145,7 @@ public final class Planet {
      * @return The x coordinate net force for this planet
      */
     public double getXNetForce() {
-        return xNetForce;
+        return getXAccel() * getMass();
     }
 
     /**
@@ -135,7 +154,7 @@ public final class Planet {
      * @return The y coordinate net force for this planet
      */
     public double getYNetForce() {
-        return yNetForce;
+        return getYAccel() * getMass();
     }
 
     /**
@@ -193,11 +212,8 @@ public final class Planet {
             }
         }
 
-        xNetForce = deltaX;
-        yNetForce = deltaY;
-
-        xAccel = getXNetForce() / getMass();
-        yAccel = getYNetForce() / getMass();
+        store.ax[index] = deltaX / getMass();
+        store.ay[index] = deltaY / getMass();
 
     }
 
@@ -230,8 +246,8 @@ public final class Planet {
      */
     void updateVelocity(double dt) {
 
-        xVelocity = getXVelocity() + dt * getXAccel();
-        yVelocity = getYVelocity() + dt * getYAccel();
+        store.vx[index] = getXVelocity() + dt * getXAccel();
+        store.vy[index] = getYVelocity() + dt * getYAccel();
 
     }
 
@@ -240,8 +256,8 @@ public final class Planet {
      */
     void updatePosition(double dt) {
 
-        x = getX() + dt * getXVelocity();
-        y = getY() + dt * getYVelocity();
+        store.x[index] = getX() + dt * getXVelocity();
+        store.y[index] = getY() + dt * getYVelocity();
 
     }
 
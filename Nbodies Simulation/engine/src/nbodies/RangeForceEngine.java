@@ -0,0 +1,50 @@
+package nbodies;
+
+/**
+ * A force engine that calculates the acceleration of each particle on its own,
+ * without writing to any other particle. Once the engine has been prepared for
+ * a step, any ranges of the particles can be accelerated in any order, or at
+ * the same time from different threads, with the same result
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public interface RangeForceEngine extends ForceEngine {
+
+    /**
+     * Prepares the engine for calculating accelerations from the current
+     * positions and masses of the particles
+     *
+     * @param particles The particles of the universe
+     */
+    void prepare(ParticleStore particles);
+
+    /**
+     * Calculates and sets the accelerations of a range of particles. The
+     * engine must have been prepared for the current positions
+     *
+     * @param particles The particles of the universe
+     * @param from Index of the first particle of the range
+     * @param to Index after the last particle of the range
+     */
+    void accelerate(ParticleStore particles, int from, int to);
+
+    @Override
+    default void computeAccelerations(ParticleStore particles) {
+
+        prepare(particles);
+        accelerate(particles, 0, particles.size());
+
+    }
+
+    @Override
+    default void computeAccelerations(ParticleStore particles, int[] active, int count) {
+
+        prepare(particles);
+        for (int k = 0; k < count; k++) {
+            accelerate(particles, active[k], active[k] + 1);
+        }
+    }
+
+}
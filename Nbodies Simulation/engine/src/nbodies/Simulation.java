@@ -0,0 +1,405 @@
+package nbodies;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * A single simulation of a universe: its particles, the radius and simulation
+ * time of the universe, and the force engine, integrator and collision merger
+ * that move it. Everything a simulation needs is held by the object, so any
+ * amount of simulations can run side by side in one JVM, each on its own
+ * thread. A simulation is not itself safe to step from several threads at once.
+ * Its force engine may run threads of its own, which are stopped when the
+ * simulation is closed
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class Simulation implements AutoCloseable {
+
+    private final ParticleStore particles; // the particles of the universe
+    private final double radius; // radius of the universe
+    private double time; // simulation time the universe is at
+    private final ForceEngine forces; // computes the accelerations each step
+    private final Integrator integrator; // moves the particles each step
+    private final CollisionMerger collisions; // merges colliding particles, null for none
+    private TrajectoryRecorder recorder = null; // records the simulation, null for none
+    private SpatialOrder order = null; // rearranges the particles along a Hilbert curve, null to keep them in input order
+    private int reorderEvery = 0; // steps between rearrangements, 0 for none
+    private int stepsSinceReorder = 0; // steps taken since the particles were last rearranged
+
+    /**
+     * Constructs a simulation of a universe
+     *
+     * @param store The particles of the universe, which the simulation moves
+     * @param universeRadius The radius of the universe
+     * @param simulationTime The simulation time the particles are at
+     * @param engine The force engine computing the accelerations
+     * @param method The integrator moving the particles
+     * @param merger The collision merger to use, or null to let particles pass
+     *            through each other
+     */
+    public Simulation(ParticleStore store, double universeRadius, double simulationTime, ForceEngine engine, Integrator method, CollisionMerger merger) {
+
+        particles = store;
+        radius = universeRadius;
+        time = simulationTime;
+        forces = engine;
+        integrator = method;
+        collisions = merger;
+
+    }
+
+    /**
+     * Builds the simulation described by a set of options: loads its universe
+     * file, perturbs the initial conditions if asked to, and builds the force
+     * engine, integrator and collision merger the options select
+     *
+     * @param options The options of the simulation
+     * @return The simulation, at the time its universe file was saved at
+     * @throws IOException if the universe file cannot be read
+     */
+    public static Simulation load(SimulationOptions options) throws IOException {
+
+        BinaryUniverse universe = NBody.readUniverse(options.getUniverseFile());
+        ParticleStore store = universe.getParticles();
+        if (options.getPerturbation() > 0.0) {
+            perturb(store, options.getPerturbation(), new Random(options.getSeed()));
+        }
+
+        Simulation simulation = new Simulation(store, universe.getRadius(), universe.getTime(), createForceEngine(options, universe.getRadius()),
+                createIntegrator(options), options.isCollisions() ? new CollisionMerger(options.getCollisionRadius()) : null);
+        simulation.setReorderInterval(options.getReorderEvery());
+
+        return simulation;
+
+    }
+
+    /*
+     * Scales the position and velocity of every particle by a random factor
+     * drawn from a normal distribution around 1, with the given standard
+     * deviation
+     */
+    private static void perturb(ParticleStore store, double fraction, Random random) {
+
+        for (int i = 0; i < store.size(); i++) {
+            store.x[i] *= 1.0 + fraction * random.nextGaussian();
+            store.y[i] *= 1.0 + fraction * random.nextGaussian();
+            store.vx[i] *= 1.0 + fraction * random.nextGaussian();
+            store.vy[i] *= 1.0 + fraction * random.nextGaussian();
+        }
+    }
+
+    /*
+     * Builds the integrator selected by the options. Sub-stepping close
+     * encounters takes leapfrog integration
+     */
+    private static Integrator createIntegrator(SimulationOptions options) {
+
+        if (options.getEncounterDistance() > 0.0) {
+            return new EncounterIntegrator(options.getEncounterDistance(), options.getEncounterSteps(), options.getEta(), options.getSoftening());
+        }
+
+        switch (options.getIntegrator()) {
+        case SimulationOptions.LEAPFROG_INTEGRATOR:
+            return new LeapfrogIntegrator();
+        case SimulationOptions.BLOCK_INTEGRATOR:
+            return new BlockTimestepIntegrator(options.getBlockLevels(), options.getEta());
+        default:
+            return new EulerIntegrator();
+        }
+    }
+
+    /*
+     * Builds the force engine selected by the options, for a universe of the
+     * given radius. With more than one thread, or with block time steps that
+     * only need some of the accelerations, the forces on each particle are
+     * summed on their own, as they always are in mixed precision. Tiled
+     * forces run the same sums in cache sized tiles, which give the same
+     * accelerations. Vector forces fall back to the same scalar sums without
+     * the Vector API. The fast multipole method and the particle mesh
+     * calculate the pull on whole cells of particles at once, so they always
+     * run on a single thread
+     */
+    private static ForceEngine createForceEngine(SimulationOptions options, double universeSize) {
+
+        boolean barnesHut = options.getForces().equals(SimulationOptions.BARNES_HUT_FORCES);
+        double softening = options.getSoftening();
+
+        if (options.getForces().equals(SimulationOptions.FMM_FORCES)) {
+            if (options.getThreads() > 1) {
+                System.err.println("The fast multipole method runs on a single thread.");
+            }
+            return new FastMultipole(options.getOrder(), options.getTheta(), softening);
+        }
+
+        boolean p3m = options.getForces().equals(SimulationOptions.P3M_FORCES);
+        if (p3m || options.getForces().equals(SimulationOptions.PM_FORCES)) {
+            if (options.getThreads() > 1) {
+                System.err.println("The particle mesh runs on a single thread.");
+            }
+            return new ParticleMesh(universeSize, options.getMesh(), p3m, softening);
+        }
+
+        if (options.getPrecision().equals(SimulationOptions.MIXED_PRECISION)) {
+            MixedPrecisionSum engine = new MixedPrecisionSum(softening);
+            return options.getThreads() > 1 ? new ParallelForces(engine, options.getThreads()) : engine;
+        }
+
+        if (options.getForces().equals(SimulationOptions.TILED_FORCES)) {
+            TiledDirectSum engine = new TiledDirectSum(softening);
+            return options.getThreads() > 1 ? new ParallelForces(engine, options.getThreads()) : engine;
+        }
+
+        if (options.getForces().equals(SimulationOptions.VECTOR_FORCES)) {
+            if (!VectorSupport.isAvailable()) {
+                System.err.println("The Vector API is unavailable, run java with --add-modules " + VectorSupport.MODULE + ". Using scalar forces.");
+            }
+            if (options.getThreads() > 1) {
+                return new ParallelForces(VectorSupport.createDirectSum(softening), options.getThreads());
+            }
+            if (options.getIntegrator().equals(SimulationOptions.BLOCK_INTEGRATOR)) {
+                return VectorSupport.createDirectSum(softening);
+            }
+            return VectorSupport.createSymmetricSum(softening);
+        }
+
+        if (!barnesHut && options.getIntegrator().equals(SimulationOptions.BLOCK_INTEGRATOR) && options.getThreads() == 1) {
+            return new DirectSum(softening);
+        }
+
+        if (options.getThreads() > 1) {
+            RangeForceEngine engine = barnesHut ? new BarnesHut(universeSize, options.getTheta(), softening) : new DirectSum(softening);
+            return new ParallelForces(engine, options.getThreads());
+        }
+
+        if (barnesHut) {
+            return new BarnesHut(universeSize, options.getTheta(), softening);
+        }
+
+        return new SymmetricDirectSum(softening);
+
+    }
+
+    /**
+     * Builds the recorder asked for by a set of options for this simulation's
+     * universe, starting from the time it is at
+     *
+     * @param options The options of the simulation
+     * @return The recorder, or null if nothing is to be recorded
+     * @throws IOException if a trajectory file cannot be created
+     */
+    public TrajectoryRecorder createRecorder(SimulationOptions options) throws IOException {
+
+        if (options.getTrajectoryFile() == null && options.getCheckpointFile() == null) {
+            return null;
+        }
+
+        return new TrajectoryRecorder(options.getTrajectoryFile() == null ? null : Paths.get(options.getTrajectoryFile()), options.getRecordEvery(),
+                options.getCheckpointFile() == null ? null : Paths.get(options.getCheckpointFile()), options.getCheckpointEvery(), particles, radius, time);
+
+    }
+
+    /**
+     * Set the recorder told about every step of the following runs
+     *
+     * @param trajectory The recorder to use, or null to record nothing
+     */
+    public void setRecorder(TrajectoryRecorder trajectory) {
+        recorder = trajectory;
+    }
+
+    /**
+     * Set how often the particles are rearranged along a Hilbert curve, so
+     * particles close in space stay close in memory as the universe evolves.
+     * The particles are put back in input order whenever they are recorded and
+     * when a run ends. The integrator is told about every rearrangement, so
+     * it keeps its state rather than starting over
+     *
+     * @param steps The amount of steps between rearrangements, 0 to keep the
+     *            particles in input order
+     * @throws IllegalArgumentException if the amount of steps is negative
+     */
+    public void setReorderInterval(int steps) {
+
+        if (steps < 0) {
+            throw new IllegalArgumentException("The reorder interval must not be negative");
+        }
+
+        if (steps > 0 && order == null) {
+            order = new SpatialOrder();
+        } else if (steps == 0 && order != null) {
+            order.restore(particles);
+            integrator.permuted(particles, order.getMoves());
+            order = null;
+        }
+        reorderEvery = steps;
+        stepsSinceReorder = 0;
+
+    }
+
+    /**
+     * Get the particles of the universe, as the simulation has moved them
+     *
+     * @return The particles
+     */
+    public ParticleStore getParticles() {
+        return particles;
+    }
+
+    /**
+     * Get the radius of the universe
+     *
+     * @return The radius of the universe
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Get the simulation time the universe is at, which starts at the time
+     * its universe file was saved at
+     *
+     * @return The simulation time
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * Get the force engine computing the accelerations
+     *
+     * @return The force engine
+     */
+    public ForceEngine getForceEngine() {
+        return forces;
+    }
+
+    /**
+     * Runs the simulation for a while, showing the universe on a display from
+     * snapshots published after every step, so the simulation runs as fast as
+     * it would headless and the display shows the newest state each frame
+     *
+     * @param totalTime The time to simulate
+     * @param dt The amount of time each simulation step will take
+     * @param view The display to show the universe on
+     * @throws InterruptedException if interrupted while waiting for the last
+     *             frame to be drawn
+     */
+    public void run(double totalTime, double dt, UniverseDisplay view) throws InterruptedException {
+
+        SnapshotBuffer frames = new SnapshotBuffer(particles.size());
+        view.start(frames, particles, radius);
+
+        double start = time;
+        for (double t = 0.0; t < totalTime; t += dt) {
+            step(dt);
+            frames.publish(particles);
+            time = start + t + dt;
+            record();
+        }
+
+        restoreOrder();
+        view.finish();
+
+    }
+
+    /**
+     * Runs the simulation for a while without drawing it, as fast as the
+     * particles can be updated
+     *
+     * @param totalTime The time to simulate
+     * @param dt The amount of time each simulation step will take
+     */
+    public void runHeadless(double totalTime, double dt) {
+
+        double start = time;
+        for (double t = 0.0; t < totalTime; t += dt) {
+            step(dt);
+            time = start + t + dt;
+            record();
+        }
+
+        restoreOrder();
+
+    }
+
+    /**
+     * Advances every particle in the universe by a single simulation step,
+     * then merges the particles that collided. Merging changes particles
+     * behind the integrator's back, so it has to start over, while particles
+     * rearranged at the start of the step are followed by it instead.
+     * Stepping a simulation with a reorder interval directly may leave the
+     * particles out of input order; runs put them back when they end
+     *
+     * @param dt The amount of time the step takes
+     */
+    public void step(double dt) {
+
+        if (order != null && stepsSinceReorder++ % reorderEvery == 0) {
+            order.sort(particles);
+            integrator.permuted(particles, order.getMoves());
+        }
+
+        integrator.step(particles, forces, dt);
+
+        if (collisions != null && collisions.merge(particles) > 0) {
+            integrator.reset();
+        }
+    }
+
+    /*
+     * Hands the particles to the recorder after a simulation step, with the
+     * time the universe is at, if the simulation is being recorded.
+     * Rearranged particles are only put back in input order for the steps the
+     * recorder copies them on
+     */
+    private void record() {
+
+        if (recorder != null && order != null && recorder.isDue()) {
+            order.restore(particles);
+            recorder.stepCompleted(particles, time);
+            order.reapply(particles);
+        } else if (recorder != null) {
+            recorder.stepCompleted(particles, time);
+        }
+    }
+
+    /*
+     * Puts the particles back in input order after a run, so they are written
+     * out in the order of the universe file. The next step rearranges them
+     * again
+     */
+    private void restoreOrder() {
+
+        if (order != null) {
+            order.restore(particles);
+            integrator.permuted(particles, order.getMoves());
+            stepsSinceReorder = 0;
+        }
+    }
+
+    /**
+     * Print the universe in the format of the text data files
+     *
+     * @param out The stream to print to
+     */
+    public void printUniverse(PrintStream out) {
+        NBody.printUniverse(particles, radius, out);
+    }
+
+    /**
+     * Stops the threads of the force engine, if it has any. The recorder is
+     * left open
+     */
+    @Override
+    public void close() {
+        if (forces instanceof ParallelForces) {
+            ((ParallelForces) forces).shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,482 @@
+package nbodies;
+
+/**
+ * The options a simulation was started with. Options are given on the command
+ * line as flags beginning with "--" and may appear anywhere among the 3
+ * required arguments: the length of the simulation, the size of a time step in
+ * the simulation, and a text file containing planetary data from which to
+ * build the universe
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ *
+ */
+
+public final class SimulationOptions {
+
+    public static final String HEADLESS = "--headless";
+    public static final String FORCES = "--forces"; // --forces=<direct|tiled|vector|barnes-hut|fmm|pm|p3m>
+    public static final String THETA = "--theta"; // --theta=<opening angle>
+    public static final String ORDER = "--order"; // --order=<fast multipole expansion order>
+    public static final String MESH = "--mesh"; // --mesh=<particle mesh nodes along each side>
+    public static final String PRECISION = "--precision"; // --precision=<double|mixed>
+    public static final String THREADS = "--threads"; // --threads=<amount of force threads>
+    public static final String SOFTENING = "--softening"; // --softening=<Plummer softening length>
+    public static final String INTEGRATOR = "--integrator"; // --integrator=<euler|leapfrog|block>
+    public static final String BLOCK_LEVELS = "--block-levels"; // --block-levels=<deepest block time step level>
+    public static final String ETA = "--eta"; // --eta=<block and encounter time step accuracy>
+    public static final String ENCOUNTERS = "--encounters"; // --encounters=<distance close encounters are sub-stepped within>
+    public static final String ENCOUNTER_STEPS = "--encounter-steps"; // --encounter-steps=<most sub-steps of an encounter>
+    public static final String COLLISIONS = "--collisions"; // --collisions or --collisions=<collision radius of bodies without one>
+    public static final String PERTURB = "--perturb"; // --perturb=<relative spread of the initial positions and velocities>
+    public static final String SEED = "--seed"; // --seed=<seed of the random perturbation>
+    public static final String TRAJECTORY = "--trajectory"; // --trajectory=<trajectory file>
+    public static final String RECORD_EVERY = "--record-every"; // --record-every=<steps between trajectory records>
+    public static final String CHECKPOINT = "--checkpoint"; // --checkpoint=<checkpoint file>
+    public static final String CHECKPOINT_EVERY = "--checkpoint-every"; // --checkpoint-every=<steps between checkpoints>
+    public static final String REORDER = "--reorder"; // --reorder=<steps between rearranging the particles along a Hilbert curve>
+
+    public static final String DIRECT_FORCES = "direct";
+    public static final String TILED_FORCES = "tiled";
+    public static final String VECTOR_FORCES = "vector";
+    public static final String BARNES_HUT_FORCES = "barnes-hut";
+    public static final String FMM_FORCES = "fmm";
+    public static final String PM_FORCES = "pm";
+    public static final String P3M_FORCES = "p3m";
+
+    public static final String DOUBLE_PRECISION = "double";
+    public static final String MIXED_PRECISION = "mixed";
+
+    public static final String EULER_INTEGRATOR = "euler";
+    public static final String LEAPFROG_INTEGRATOR = "leapfrog";
+    public static final String BLOCK_INTEGRATOR = "block";
+
+    private double totalTime; // the total time of the simulation
+    private double timeStep; // the amount of time each simulation step will take
+    private String universeFile; // data file the universe is built from
+    private boolean headless = false; // run without drawing or audio
+    private String forces = DIRECT_FORCES; // how the gravitational forces are calculated
+    private double theta = BarnesHut.DEFAULT_THETA; // opening angle of the Barnes-Hut and fast multipole engines
+    private int order = FastMultipole.DEFAULT_ORDER; // expansion order of the fast multipole engine
+    private int mesh = ParticleMesh.DEFAULT_MESH; // nodes along each side of the particle mesh
+    private String precision = DOUBLE_PRECISION; // precision of the pairwise force terms
+    private int threads = 1; // amount of threads the forces are calculated with
+    private double softening = 0.0; // Plummer softening length of the forces
+    private String integrator = EULER_INTEGRATOR; // how the particles are moved through time
+    private int blockLevels = BlockTimestepIntegrator.DEFAULT_MAX_LEVEL; // deepest block time step level
+    private double eta = BlockTimestepIntegrator.DEFAULT_ETA; // accuracy of the block and encounter time steps
+    private double encounterDistance = 0.0; // distance close encounters are sub-stepped within, 0 for none
+    private int encounterSteps = EncounterIntegrator.DEFAULT_MAX_SUB_STEPS; // most sub-steps of a close encounter
+    private boolean collisions = false; // merge colliding particles
+    private double collisionRadius = 0.0; // collision radius of particles without one
+    private double perturbation = 0.0; // relative spread of the initial positions and velocities, 0 for none
+    private long seed = 0L; // seed of the random perturbation
+    private String trajectoryFile = null; // file the trajectory is recorded to, null for none
+    private int recordEvery = 1; // steps between trajectory records
+    private String checkpointFile = null; // file checkpoints are saved to, null for none
+    private int checkpointEvery = 1000; // steps between checkpoints
+    private int reorderEvery = 0; // steps between rearranging the particles in memory, 0 for never
+
+    private SimulationOptions() {
+    }
+
+    /**
+     * Parse the command line arguments given to the simulation
+     *
+     * @param args The command line arguments
+     * @return The options described by the arguments
+     * @throws IllegalArgumentException if an unknown flag is supplied, the
+     *             wrong amount of arguments are supplied, close encounters
+     *             are combined with block time steps or mixed precision with
+     *             forces other than direct summation
+     */
+    public static SimulationOptions parse(String[] args) {
+
+        SimulationOptions options = new SimulationOptions();
+        String[] required = new String[3];
+        int count = 0;
+
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                options.setFlag(arg);
+            } else if (count < required.length) {
+                required[count++] = arg;
+            } else {
+                throw new IllegalArgumentException("Too many arguments: " + arg);
+            }
+        }
+
+        if (count != required.length) {
+            throw new IllegalArgumentException("Incorrect amount of arguments.");
+        }
+
+        if (options.precision.equals(MIXED_PRECISION) && !options.forces.equals(DIRECT_FORCES)) {
+            throw new IllegalArgumentException("Mixed precision is only available for direct forces: " + PRECISION);
+        }
+
+        if (options.forces.equals(FMM_FORCES) && options.theta >= 1.0) {
+            throw new IllegalArgumentException("The fast multipole method needs an opening angle below 1: " + THETA);
+        }
+
+        if (options.encounterDistance > 0.0 && options.integrator.equals(BLOCK_INTEGRATOR)) {
+            throw new IllegalArgumentException("Block time steps already shorten the steps of close encounters: " + ENCOUNTERS);
+        }
+
+        options.totalTime = Double.parseDouble(required[0]);
+        options.timeStep = Double.parseDouble(required[1]);
+        options.universeFile = required[2];
+
+        return options;
+
+    }
+
+    /*
+     * Apply a single "--" flag, or "--" flag with an "=" value, to these
+     * options
+     */
+    private void setFlag(String arg) {
+
+        int split = arg.indexOf('=');
+        String flag = split < 0 ? arg : arg.substring(0, split);
+        String value = split < 0 ? null : arg.substring(split + 1);
+
+        if (flag.equals(HEADLESS)) {
+            headless = true;
+        } else if (flag.equals(FORCES) && (DIRECT_FORCES.equals(value) || TILED_FORCES.equals(value) || VECTOR_FORCES.equals(value) || BARNES_HUT_FORCES.equals(value)
+                || FMM_FORCES.equals(value) || PM_FORCES.equals(value) || P3M_FORCES.equals(value))) {
+            forces = value;
+        } else if (flag.equals(THETA) && value != null) {
+            theta = Double.parseDouble(value);
+            if (!(theta >= 0.0)) {
+                throw new IllegalArgumentException("The opening angle must not be negative: " + arg);
+            }
+        } else if (flag.equals(ORDER) && value != null) {
+            order = Integer.parseInt(value);
+            if (order < 1 || order > FastMultipole.MAX_ORDER) {
+                throw new IllegalArgumentException("The expansion order must be between 1 and " + FastMultipole.MAX_ORDER + ": " + arg);
+            }
+        } else if (flag.equals(MESH) && value != null) {
+            mesh = Integer.parseInt(value);
+            if (mesh < ParticleMesh.MIN_MESH || (mesh & (mesh - 1)) != 0) {
+                throw new IllegalArgumentException("The mesh must be a power of two of at least " + ParticleMesh.MIN_MESH + ": " + arg);
+            }
+        } else if (flag.equals(PRECISION) && (DOUBLE_PRECISION.equals(value) || MIXED_PRECISION.equals(value))) {
+            precision = value;
+        } else if (flag.equals(THREADS) && value != null) {
+            threads = Integer.parseInt(value);
+            if (threads < 1) {
+                throw new IllegalArgumentException("At least one thread is needed: " + arg);
+            }
+        } else if (flag.equals(SOFTENING) && value != null) {
+            softening = Double.parseDouble(value);
+            if (!(softening >= 0.0)) {
+                throw new IllegalArgumentException("The softening length must not be negative: " + arg);
+            }
+        } else if (flag.equals(INTEGRATOR) && (EULER_INTEGRATOR.equals(value) || LEAPFROG_INTEGRATOR.equals(value) || BLOCK_INTEGRATOR.equals(value))) {
+            integrator = value;
+        } else if (flag.equals(BLOCK_LEVELS) && value != null) {
+            blockLevels = Integer.parseInt(value);
+            if (blockLevels < 0 || blockLevels > BlockTimestepIntegrator.LEVEL_LIMIT) {
+                throw new IllegalArgumentException("The block levels must be between 0 and " + BlockTimestepIntegrator.LEVEL_LIMIT + ": " + arg);
+            }
+        } else if (flag.equals(ETA) && value != null) {
+            eta = Double.parseDouble(value);
+            if (!(eta > 0.0)) {
+                throw new IllegalArgumentException("The accuracy must be positive: " + arg);
+            }
+        } else if (flag.equals(ENCOUNTERS) && value != null) {
+            encounterDistance = Double.parseDouble(value);
+            if (!(encounterDistance >= 0.0)) {
+                throw new IllegalArgumentException("The encounter distance must not be negative: " + arg);
+            }
+        } else if (flag.equals(ENCOUNTER_STEPS) && value != null) {
+            encounterSteps = Integer.parseInt(value);
+            if (encounterSteps < 1) {
+                throw new IllegalArgumentException("At least one sub-step is needed: " + arg);
+            }
+        } else if (flag.equals(COLLISIONS)) {
+            collisions = true;
+            if (value != null) {
+                collisionRadius = Double.parseDouble(value);
+                if (!(collisionRadius >= 0.0)) {
+                    throw new IllegalArgumentException("The collision radius must not be negative: " + arg);
+                }
+            }
+        } else if (flag.equals(PERTURB) && value != null) {
+            perturbation = Double.parseDouble(value);
+            if (!(perturbation >= 0.0)) {
+                throw new IllegalArgumentException("The perturbation must not be negative: " + arg);
+            }
+        } else if (flag.equals(SEED) && value != null) {
+            seed = Long.parseLong(value);
+        } else if (flag.equals(TRAJECTORY) && value != null && !value.isEmpty()) {
+            trajectoryFile = value;
+        } else if (flag.equals(RECORD_EVERY) && value != null) {
+            recordEvery = Integer.parseInt(value);
+            if (recordEvery < 1) {
+                throw new IllegalArgumentException("At least one step is needed between records: " + arg);
+            }
+        } else if (flag.equals(CHECKPOINT) && value != null && !value.isEmpty()) {
+            checkpointFile = value;
+        } else if (flag.equals(CHECKPOINT_EVERY) && value != null) {
+            checkpointEvery = Integer.parseInt(value);
+            if (checkpointEvery < 1) {
+                throw new IllegalArgumentException("At least one step is needed between checkpoints: " + arg);
+            }
+        } else if (flag.equals(REORDER) && value != null) {
+            reorderEvery = Integer.parseInt(value);
+            if (reorderEvery < 0) {
+                throw new IllegalArgumentException("The reorder interval must not be negative: " + arg);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown option: " + arg);
+        }
+    }
+
+    /**
+     * Get the total time of the simulation
+     *
+     * @return The total time of the simulation
+     */
+    public double getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * Get the size of a simulation step
+     *
+     * @return The amount of time each simulation step will take
+     */
+    public double getTimeStep() {
+        return timeStep;
+    }
+
+    /**
+     * Get the universe data file
+     *
+     * @return The name of the file the universe is built from
+     */
+    public String getUniverseFile() {
+        return universeFile;
+    }
+
+    /**
+     * Whether the simulation should run without drawing the universe or
+     * playing the soundtrack
+     *
+     * @return True if the simulation is headless
+     */
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Get how the gravitational forces are calculated, either DIRECT_FORCES,
+     * TILED_FORCES, VECTOR_FORCES, BARNES_HUT_FORCES, FMM_FORCES, PM_FORCES or
+     * P3M_FORCES
+     *
+     * @return The name of the force calculation
+     */
+    public String getForces() {
+        return forces;
+    }
+
+    /**
+     * Get the opening angle used when forces are calculated with the
+     * Barnes-Hut approximation or the fast multipole method
+     *
+     * @return The opening angle theta
+     */
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * Get the highest power kept in the series of the fast multipole method
+     *
+     * @return The expansion order
+     */
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * Get the amount of nodes along each side of the particle mesh, which
+     * spans the diameter of the universe
+     *
+     * @return The width of the mesh in nodes
+     */
+    public int getMesh() {
+        return mesh;
+    }
+
+    /**
+     * Get the precision the pairwise terms of the forces are calculated in,
+     * either DOUBLE_PRECISION or MIXED_PRECISION, where the terms are floats
+     * summed in double precision
+     *
+     * @return The name of the precision
+     */
+    public String getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Get the amount of threads the gravitational forces are calculated with
+     *
+     * @return The amount of force threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Get the Plummer softening length of the gravitational forces, which
+     * limits the pull between particles passing closer than it
+     *
+     * @return The softening length, 0 for Newtonian forces
+     */
+    public double getSoftening() {
+        return softening;
+    }
+
+    /**
+     * Get how the particles are moved through time, either EULER_INTEGRATOR,
+     * LEAPFROG_INTEGRATOR or BLOCK_INTEGRATOR
+     *
+     * @return The name of the integrator
+     */
+    public String getIntegrator() {
+        return integrator;
+    }
+
+    /**
+     * Get the deepest level of the block time steps, the smallest step taken
+     * is the time step divided by 2 to this power
+     *
+     * @return The deepest block time step level
+     */
+    public int getBlockLevels() {
+        return blockLevels;
+    }
+
+    /**
+     * Get the accuracy parameter of the block time steps and the sub-steps of
+     * close encounters
+     *
+     * @return The fraction of the time for a particle's acceleration to change
+     *         its velocity that its step may take
+     */
+    public double getEta() {
+        return eta;
+    }
+
+    /**
+     * Get the distance within which pairs of particles are sub-stepped with
+     * leapfrog integration
+     *
+     * @return The encounter distance, 0 if close encounters are not
+     *         sub-stepped
+     */
+    public double getEncounterDistance() {
+        return encounterDistance;
+    }
+
+    /**
+     * Get the most sub-steps a close encounter takes in a single step
+     *
+     * @return The most sub-steps of a close encounter
+     */
+    public int getEncounterSteps() {
+        return encounterSteps;
+    }
+
+    /**
+     * Whether colliding particles are merged
+     *
+     * @return True if collisions are handled
+     */
+    public boolean isCollisions() {
+        return collisions;
+    }
+
+    /**
+     * Get the collision radius of the particles that have none of their own
+     *
+     * @return The default collision radius
+     */
+    public double getCollisionRadius() {
+        return collisionRadius;
+    }
+
+    /**
+     * Get the relative spread of the random factors the initial positions and
+     * velocities of the particles are scaled by
+     *
+     * @return The standard deviation of the factors around 1, 0 if the
+     *         universe is not perturbed
+     */
+    public double getPerturbation() {
+        return perturbation;
+    }
+
+    /**
+     * Get the seed of the random perturbation of the universe, so a perturbed
+     * universe can be simulated again
+     *
+     * @return The random seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the file the trajectory of the simulation is recorded to
+     *
+     * @return The name of the trajectory file, or null if no trajectory is
+     *         recorded
+     */
+    public String getTrajectoryFile() {
+        return trajectoryFile;
+    }
+
+    /**
+     * Get the amount of simulation steps between trajectory records
+     *
+     * @return The amount of steps between records
+     */
+    public int getRecordEvery() {
+        return recordEvery;
+    }
+
+    /**
+     * Get the file checkpoints of the simulation are saved to
+     *
+     * @return The name of the checkpoint file, or null if no checkpoints are
+     *         saved
+     */
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Get the amount of simulation steps between checkpoints
+     *
+     * @return The amount of steps between checkpoints
+     */
+    public int getCheckpointEvery() {
+        return checkpointEvery;
+    }
+
+    /**
+     * Get the amount of simulation steps between rearranging the particles in
+     * memory along a Hilbert curve
+     *
+     * @return The amount of steps between rearrangements, 0 if the particles
+     *         stay in input order
+     */
+    public int getReorderEvery() {
+        return reorderEvery;
+    }
+
+}
@@ -0,0 +1,83 @@
+package nbodies;
+
+/**
+ * The positions and images of the particles of a universe at one moment of a
+ * simulation, copied out of a ParticleStore so the universe can be drawn while
+ * the simulation carries on. Snapshots are handed out by a SnapshotBuffer and
+ * do not change while they are held by a reader
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class Snapshot {
+
+    private final double[] x; // x coordinates of the particles
+    private final double[] y; // y coordinates of the particles
+    private final int[] image; // index of each particle's image in the store's image table
+    private int count = 0; // amount of particles in the snapshot
+
+    /*
+     * Constructs a snapshot able to hold a given amount of particles
+     */
+    Snapshot(int capacity) {
+
+        x = new double[capacity];
+        y = new double[capacity];
+        image = new int[capacity];
+
+    }
+
+    /*
+     * Copies the positions and images of the particles in a store
+     */
+    void copy(ParticleStore particles) {
+
+        count = particles.size();
+        System.arraycopy(particles.x, 0, x, 0, count);
+        System.arraycopy(particles.y, 0, y, 0, count);
+        System.arraycopy(particles.image, 0, image, 0, count);
+
+    }
+
+    /**
+     * Get the amount of particles in the snapshot
+     *
+     * @return The amount of particles
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the x coordinate of a particle
+     *
+     * @param i The index of the particle
+     * @return The x coordinate of the particle
+     */
+    public double getX(int i) {
+        return x[i];
+    }
+
+    /**
+     * Get the y coordinate of a particle
+     *
+     * @param i The index of the particle
+     * @return The y coordinate of the particle
+     */
+    public double getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * Get the index of a particle's image in the image table of the store the
+     * snapshot was taken from
+     *
+     * @param i The index of the particle
+     * @return The index of the particle's image file name
+     */
+    public int getImageIndex(int i) {
+        return image[i];
+    }
+
+}
@@ -0,0 +1,73 @@
+package nbodies;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Passes snapshots of a universe from the simulation thread to a single reader
+ * thread without locks or waiting. Three snapshots are rotated: the writer
+ * fills its own, the reader draws from its own, and the newest finished one
+ * sits in a shared slot. Publishing swaps the writer's snapshot into the slot
+ * and taking swaps the reader's out of it, so a writer that runs ahead simply
+ * replaces snapshots the reader has not taken yet, and a reader that runs
+ * ahead finds nothing new. Neither side ever allocates or blocks
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class SnapshotBuffer {
+
+    private static final int FRESH = 4; // set while the slot holds a snapshot the reader has not taken
+    private static final int INDEX = 3; // bits of the state holding the index of the slot's snapshot
+
+    private final Snapshot[] snapshots = new Snapshot[3];
+    private final AtomicInteger slot = new AtomicInteger(0); // index of the shared snapshot, and FRESH
+    private int writing = 1; // index of the writer's snapshot, only used by the writer
+    private int reading = 2; // index of the reader's snapshot, only used by the reader
+
+    /**
+     * Constructs a new snapshot buffer
+     *
+     * @param capacity The largest amount of particles a snapshot will hold
+     */
+    public SnapshotBuffer(int capacity) {
+
+        for (int s = 0; s < snapshots.length; s++) {
+            snapshots[s] = new Snapshot(capacity);
+        }
+
+    }
+
+    /**
+     * Copies the current positions of the particles and makes them the newest
+     * snapshot. Must only be called from the writer thread
+     *
+     * @param particles The particles of the universe
+     */
+    public void publish(ParticleStore particles) {
+
+        snapshots[writing].copy(particles);
+        writing = slot.getAndSet(writing | FRESH) & INDEX;
+
+    }
+
+    /**
+     * Takes the newest snapshot if one was published since the last was taken.
+     * The snapshot stays unchanged until the next call. Must only be called
+     * from the reader thread
+     *
+     * @return The newest snapshot, or null if there is no new snapshot
+     */
+    public Snapshot take() {
+
+        if ((slot.get() & FRESH) == 0) {
+            return null;
+        }
+
+        reading = slot.getAndSet(reading) & INDEX;
+
+        return snapshots[reading];
+
+    }
+
+}
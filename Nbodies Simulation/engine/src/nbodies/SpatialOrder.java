@@ -0,0 +1,215 @@
+package nbodies;
+
+import java.util.Arrays;
+
+/**
+ * Rearranges the particles of a store along a Hilbert curve, so particles that
+ * are close in space are close in memory and the trees, cells and neighbour
+ * searches of the force engines and the collision merger walk through memory
+ * in order. The bounding box of the universe is divided into a grid of 2^16
+ * cells along each side, the particles are ranked by the place of their cell
+ * on the curve with a radix sort, keeping their current order within a cell,
+ * and moved into that order together with every property they have. Each
+ * particle keeps its id, so the particles can be put back in the order they
+ * were loaded in before they are written out, and then returned to the order
+ * they had. Sorting takes linear time and allocates nothing once the scratch
+ * arrays have grown to the size of the universe
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class SpatialOrder {
+
+    public static final int BITS = 16; // bits of each coordinate of a cell along the curve
+
+    private static final int CELLS = 1 << BITS; // cells along each side of the grid
+    private static final int RADIX_BITS = 8; // bits of the key sorted on in each pass
+    private static final int RADIX = 1 << RADIX_BITS; // buckets of each pass
+    private static final int KEY_SHIFT = 32; // the key is kept in the high half of each entry, the index in the low half
+
+    private long[] entries = new long[0]; // key and index of each particle
+    private long[] sorted = new long[0]; // entries of the radix sort's last pass
+    private final int[] counts = new int[RADIX + 1]; // particles in each bucket of a pass, then where each bucket starts
+    private int[] from = new int[0]; // index each particle is moved from
+    private int[] back = new int[0]; // index each particle had before the particles were last put in id order
+    private double[] doubleScratch = new double[0]; // scratch of the moves
+    private int[] intScratch = new int[0];
+    private boolean restored = false; // whether back holds the order the particles were last put in id order from
+
+    /**
+     * Rearranges the particles in the order of their cells along the Hilbert
+     * curve
+     *
+     * @param particles The particles to rearrange
+     */
+    public void sort(ParticleStore particles) {
+
+        int n = particles.size();
+        grow(n);
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, particles.x[i]);
+            minY = Math.min(minY, particles.y[i]);
+            maxX = Math.max(maxX, particles.x[i]);
+            maxY = Math.max(maxY, particles.y[i]);
+        }
+
+        double extent = Math.max(maxX - minX, maxY - minY);
+        double cellsPerUnit = extent > 0.0 && !Double.isInfinite(extent) ? (CELLS - 1) / extent : 0.0;
+        for (int i = 0; i < n; i++) {
+            int column = (int) Math.min(CELLS - 1, Math.max(0.0, (particles.x[i] - minX) * cellsPerUnit));
+            int row = (int) Math.min(CELLS - 1, Math.max(0.0, (particles.y[i] - minY) * cellsPerUnit));
+            entries[i] = hilbert(column, row) << KEY_SHIFT | i;
+        }
+
+        move(particles, n);
+        restored = false;
+
+    }
+
+    /**
+     * Puts the particles back in the order of their ids, the order they were
+     * loaded in, remembering the order they had
+     *
+     * @param particles The particles to rearrange
+     */
+    public void restore(ParticleStore particles) {
+
+        int n = particles.size();
+        grow(n);
+
+        for (int i = 0; i < n; i++) {
+            entries[i] = (long) particles.id[i] << KEY_SHIFT | i;
+        }
+
+        move(particles, n);
+        for (int i = 0; i < n; i++) {
+            back[from[i]] = i;
+        }
+        restored = true;
+
+    }
+
+    /**
+     * Returns the particles to the order they had before they were last put
+     * in the order of their ids. Does nothing if they have been sorted since,
+     * or were never put in id order
+     *
+     * @param particles The particles to rearrange, which must not have been
+     *            added or removed since they were put in id order
+     */
+    public void reapply(ParticleStore particles) {
+
+        if (restored) {
+            particles.permute(back, doubleScratch, intScratch);
+            restored = false;
+        }
+    }
+
+    /**
+     * Get the index each particle was moved from when the particles were last
+     * sorted or put in id order. Only as many entries as there are particles
+     * are used
+     *
+     * @return The index each particle was moved from
+     */
+    public int[] getMoves() {
+        return from;
+    }
+
+    /*
+     * Sorts the entries of the particles by their keys and moves every
+     * particle to its place among them
+     */
+    private void move(ParticleStore particles, int n) {
+
+        radixSort(n);
+        for (int i = 0; i < n; i++) {
+            from[i] = (int) entries[i];
+        }
+
+        particles.permute(from, doubleScratch, intScratch);
+
+    }
+
+    /*
+     * Sorts the entries by the key in their high half, a byte at a time from
+     * the lowest. Equal keys keep their order, and passes in which every key
+     * has the same byte are skipped
+     */
+    private void radixSort(int n) {
+
+        for (int shift = KEY_SHIFT; shift < Long.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                counts[(int) (entries[i] >>> shift) & (RADIX - 1)]++;
+            }
+            if (n == 0 || counts[(int) (entries[0] >>> shift) & (RADIX - 1)] == n) {
+                continue;
+            }
+
+            for (int bucket = 0, start = 0; bucket < RADIX; bucket++) {
+                int count = counts[bucket];
+                counts[bucket] = start;
+                start += count;
+            }
+            for (int i = 0; i < n; i++) {
+                sorted[counts[(int) (entries[i] >>> shift) & (RADIX - 1)]++] = entries[i];
+            }
+
+            long[] swap = entries;
+            entries = sorted;
+            sorted = swap;
+        }
+    }
+
+    /*
+     * Returns the place of a cell along the Hilbert curve through the grid,
+     * turning the remaining coordinates as the curve turns at each level
+     */
+    private static long hilbert(int column, int row) {
+
+        int x = column;
+        int y = row;
+        long place = 0L;
+
+        for (int s = CELLS / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            place += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = CELLS - 1 - x;
+                    y = CELLS - 1 - y;
+                }
+                int turned = x;
+                x = y;
+                y = turned;
+            }
+        }
+
+        return place;
+
+    }
+
+    /*
+     * Grows the scratch arrays to hold a given amount of particles
+     */
+    private void grow(int n) {
+
+        if (entries.length < n) {
+            entries = new long[n];
+            sorted = new long[n];
+            from = new int[n];
+            back = new int[n];
+            doubleScratch = new double[n];
+            intScratch = new int[n];
+        }
+    }
+
+}
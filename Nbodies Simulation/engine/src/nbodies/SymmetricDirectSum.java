@@ -0,0 +1,88 @@
+package nbodies;
+
+/**
+ * Force engine that visits every unordered pair of particles once. By Newton's
+ * third law the pull of one particle on another is equal and opposite to the
+ * pull of the other, so a single distance calculation per pair gives the
+ * contribution to both accelerations. This halves the pairs visited by
+ * DirectSum and needs one square root per pair. The pull may be softened
+ * with a Plummer softening length as in DirectSum
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class SymmetricDirectSum implements ForceEngine {
+
+    private final double softeningSquared; // square of the Plummer softening length
+
+    /**
+     * Constructs a new symmetric direct sum force engine without softening
+     */
+    public SymmetricDirectSum() {
+        this(0.0);
+    }
+
+    /**
+     * Constructs a new symmetric direct sum force engine
+     *
+     * @param softening The Plummer softening length, 0 for Newtonian forces
+     * @throws IllegalArgumentException if the softening length is negative
+     */
+    public SymmetricDirectSum(double softening) {
+
+        if (!(softening >= 0.0)) {
+            throw new IllegalArgumentException("softening must not be negative");
+        }
+
+        softeningSquared = softening * softening;
+
+    }
+
+    @Override
+    public void computeAccelerations(ParticleStore particles) {
+
+        int n = particles.size();
+        double[] x = particles.x;
+        double[] y = particles.y;
+        double[] ax = particles.ax;
+        double[] ay = particles.ay;
+        double[] mass = particles.mass;
+
+        for (int i = 0; i < n; i++) {
+            ax[i] = 0.0;
+            ay[i] = 0.0;
+        }
+
+        for (int i = 0; i < n; i++) {
+
+            double xi = x[i];
+            double yi = y[i];
+            double massI = mass[i];
+            double xAccel = 0.0;
+            double yAccel = 0.0;
+
+            for (int j = i + 1; j < n; j++) {
+                double deltaX = x[j] - xi;
+                double deltaY = y[j] - yi;
+                double distSquared = deltaX * deltaX + deltaY * deltaY + softeningSquared;
+                double inverseCube = 1.0 / (distSquared * Math.sqrt(distSquared));
+                double forceX = deltaX * inverseCube;
+                double forceY = deltaY * inverseCube;
+                xAccel += mass[j] * forceX;
+                yAccel += mass[j] * forceY;
+                ax[j] -= massI * forceX;
+                ay[j] -= massI * forceY;
+            }
+
+            ax[i] += xAccel;
+            ay[i] += yAccel;
+        }
+
+        for (int i = 0; i < n; i++) {
+            ax[i] *= Planet.GRAVITATIONAL_CONSTANT;
+            ay[i] *= Planet.GRAVITATIONAL_CONSTANT;
+        }
+    }
+
+}
@@ -0,0 +1,342 @@
+package nbodies;
+
+/**
+ * Force engine that sums the pull of every other particle on each particle
+ * directly, like DirectSum and SymmetricDirectSum, but in tiles sized to the
+ * processor's caches. Particles are taken a tile of rows at a time, and each
+ * row tile is run against the universe a tile of columns at a time, so a
+ * column tile is read from memory once per row tile and served from the cache
+ * for every row in it, instead of the whole universe being streamed past every
+ * particle. Every acceleration is summed over the same particles in the same
+ * order as without tiles: ranges of particles give exactly what DirectSum
+ * gives, and whole universes, which sum each pair once, exactly what
+ * SymmetricDirectSum gives. The tile sizes therefore only change the speed,
+ * and unless they are given they are tuned the first time a universe of at
+ * least 4096 particles is calculated, by timing the first 512 rows with a few
+ * row and column tile sizes and keeping the fastest. Columns are also tried
+ * untiled, which wins where the whole universe stays in the cache anyway and
+ * the sums are limited by the square roots and divisions rather than by
+ * memory. Smaller universes keep the default tiles. Every pair of tile sizes
+ * is run once before any is timed, so none is timed before the compiler has
+ * seen it, and the sweeps through the pairs are interleaved so a slowdown of
+ * the machine does not fall on a single pair. Tuning still sees a single
+ * thread and the universe as it starts, and pairs whose timings lie within
+ * the noise of the machine may be picked either way, which only costs speed
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class TiledDirectSum implements RangeForceEngine {
+
+    public static final int DEFAULT_ROW_TILE = 64; // particles accelerated against each column tile at a time
+    public static final int DEFAULT_COLUMN_TILE = 1024; // particles pulling on a row tile at a time
+    public static final int TUNE_THRESHOLD = 4096; // fewest particles the tile sizes are tuned on
+    public static final int TUNE_ROWS = 512; // rows timed with each pair of tile sizes
+
+    private static final int[] ROW_TILES = { 16, 64, 256 }; // row tile sizes tried when tuning
+    private static final int[] COLUMN_TILES = { 1024, 8192, Integer.MAX_VALUE }; // column tile sizes tried when tuning, the last without tiles
+    private static final int WARM_UP_SWEEPS = 1; // untimed runs through every pair of tile sizes, so each is compiled before timing
+    private static final int TIMED_SWEEPS = 2; // timed runs through every pair of tile sizes, keeping each pair's fastest
+
+    private final double softeningSquared; // square of the Plummer softening length
+    private int rowTile; // particles accelerated against each column tile at a time
+    private int columnTile; // particles pulling on a row tile at a time
+    private boolean tuned; // whether the tile sizes are settled
+    private final double[] rowX = new double[ROW_TILES[ROW_TILES.length - 1]]; // sums of the pull on each row of a tile, when each pair is summed once
+    private final double[] rowY = new double[ROW_TILES[ROW_TILES.length - 1]];
+
+    /**
+     * Constructs a new tiled direct sum force engine without softening, whose
+     * tile sizes are tuned on the first large universe it calculates
+     */
+    public TiledDirectSum() {
+        this(0.0);
+    }
+
+    /**
+     * Constructs a new tiled direct sum force engine whose tile sizes are tuned
+     * on the first large universe it calculates
+     *
+     * @param softening The Plummer softening length, 0 for Newtonian forces
+     * @throws IllegalArgumentException if the softening length is negative
+     */
+    public TiledDirectSum(double softening) {
+
+        this(softening, DEFAULT_ROW_TILE, DEFAULT_COLUMN_TILE);
+        tuned = false;
+
+    }
+
+    /**
+     * Constructs a new tiled direct sum force engine with fixed tile sizes
+     *
+     * @param softening The Plummer softening length, 0 for Newtonian forces
+     * @param rows The amount of particles accelerated against each column tile
+     *            at a time, at most 256
+     * @param columns The amount of particles pulling on a row tile at a time
+     * @throws IllegalArgumentException if the softening length is negative or
+     *             a tile size is out of range
+     */
+    public TiledDirectSum(double softening, int rows, int columns) {
+
+        if (!(softening >= 0.0)) {
+            throw new IllegalArgumentException("softening must not be negative");
+        }
+        if (rows < 1 || rows > rowX.length || columns < 1) {
+            throw new IllegalArgumentException("tile sizes must be positive, with at most " + rowX.length + " rows");
+        }
+
+        softeningSquared = softening * softening;
+        rowTile = rows;
+        columnTile = columns;
+        tuned = true;
+
+    }
+
+    /**
+     * Get the amount of particles accelerated against each column tile at a
+     * time
+     *
+     * @return The rows of a tile
+     */
+    public int getRowTile() {
+        return rowTile;
+    }
+
+    /**
+     * Get the amount of particles pulling on a row tile at a time
+     *
+     * @return The columns of a tile
+     */
+    public int getColumnTile() {
+        return columnTile;
+    }
+
+    @Override
+    public void prepare(ParticleStore particles) {
+
+        if (!tuned && particles.size() >= TUNE_THRESHOLD) {
+            tune(particles, false);
+        }
+    }
+
+    @Override
+    public void accelerate(ParticleStore particles, int from, int to) {
+
+        double[] ax = particles.ax;
+        double[] ay = particles.ay;
+        int n = particles.size();
+
+        for (int rowStart = from, rowEnd; rowStart < to; rowStart = rowEnd) {
+            rowEnd = rowStart + Math.min(rowTile, to - rowStart);
+            for (int i = rowStart; i < rowEnd; i++) {
+                ax[i] = 0.0;
+                ay[i] = 0.0;
+            }
+            for (int columnStart = 0, columnEnd; columnStart < n; columnStart = columnEnd) {
+                columnEnd = columnStart + Math.min(columnTile, n - columnStart);
+                for (int i = rowStart; i < rowEnd; i++) {
+                    pull(particles, i, columnStart, columnEnd);
+                }
+            }
+            for (int i = rowStart; i < rowEnd; i++) {
+                ax[i] *= Planet.GRAVITATIONAL_CONSTANT;
+                ay[i] *= Planet.GRAVITATIONAL_CONSTANT;
+            }
+        }
+    }
+
+    /**
+     * Calculates the accelerations of every particle, summing the pull of each
+     * pair of particles once and applying it to both of them
+     *
+     * @param particles The particles of the universe
+     */
+    @Override
+    public void computeAccelerations(ParticleStore particles) {
+
+        int n = particles.size();
+        if (!tuned && n >= TUNE_THRESHOLD) {
+            tune(particles, true);
+        }
+
+        double[] ax = particles.ax;
+        double[] ay = particles.ay;
+
+        for (int i = 0; i < n; i++) {
+            ax[i] = 0.0;
+            ay[i] = 0.0;
+        }
+
+        pullPairs(particles, 0, n);
+
+        for (int i = 0; i < n; i++) {
+            ax[i] *= Planet.GRAVITATIONAL_CONSTANT;
+            ay[i] *= Planet.GRAVITATIONAL_CONSTANT;
+        }
+    }
+
+    /*
+     * Adds the pull of the particles of a column tile to the acceleration of a
+     * single particle. The particle itself is skipped by splitting the loop
+     * around it, as DirectSum does, and the terms are added in the order
+     * DirectSum adds them
+     */
+    private void pull(ParticleStore particles, int i, int columnStart, int columnEnd) {
+
+        double[] x = particles.x;
+        double[] y = particles.y;
+        double[] mass = particles.mass;
+
+        double xi = x[i];
+        double yi = y[i];
+        double xAccel = particles.ax[i];
+        double yAccel = particles.ay[i];
+
+        int before = Math.min(i, columnEnd);
+        for (int j = columnStart; j < before; j++) {
+            double deltaX = x[j] - xi;
+            double deltaY = y[j] - yi;
+            double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY + softeningSquared);
+            double scale = mass[j] / (distance * distance * distance);
+            xAccel += scale * deltaX;
+            yAccel += scale * deltaY;
+        }
+
+        for (int j = Math.max(i + 1, columnStart); j < columnEnd; j++) {
+            double deltaX = x[j] - xi;
+            double deltaY = y[j] - yi;
+            double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY + softeningSquared);
+            double scale = mass[j] / (distance * distance * distance);
+            xAccel += scale * deltaX;
+            yAccel += scale * deltaY;
+        }
+
+        particles.ax[i] = xAccel;
+        particles.ay[i] = yAccel;
+
+    }
+
+    /*
+     * Sums the pull between each particle of a range of rows and every later
+     * particle once, as SymmetricDirectSum does, adding it to both. Each row's
+     * own sum is gathered across the column tiles and added once the row tile
+     * is done, after every earlier row has added its share, so each
+     * acceleration sees its terms in the order SymmetricDirectSum adds them
+     */
+    private void pullPairs(ParticleStore particles, int from, int to) {
+
+        int n = particles.size();
+
+        for (int rowStart = from, rowEnd; rowStart < to; rowStart = rowEnd) {
+            rowEnd = rowStart + Math.min(rowTile, to - rowStart);
+            for (int i = rowStart; i < rowEnd; i++) {
+                rowX[i - rowStart] = 0.0;
+                rowY[i - rowStart] = 0.0;
+            }
+
+            for (int columnStart = rowStart + 1, columnEnd; columnStart < n; columnStart = columnEnd) {
+                columnEnd = columnStart + Math.min(columnTile, n - columnStart);
+                for (int i = rowStart; i < rowEnd; i++) {
+                    pullPairs(particles, i, i - rowStart, Math.max(i + 1, columnStart), columnEnd);
+                }
+            }
+
+            for (int i = rowStart; i < rowEnd; i++) {
+                particles.ax[i] += rowX[i - rowStart];
+                particles.ay[i] += rowY[i - rowStart];
+            }
+        }
+    }
+
+    /*
+     * Sums the pull between a single particle and the later particles of a
+     * column tile, adding it to both, with the particle's own share gathered
+     * in its row of the tile
+     */
+    private void pullPairs(ParticleStore particles, int i, int row, int columnStart, int columnEnd) {
+
+        double[] x = particles.x;
+        double[] y = particles.y;
+        double[] ax = particles.ax;
+        double[] ay = particles.ay;
+        double[] mass = particles.mass;
+
+        double xi = x[i];
+        double yi = y[i];
+        double massI = mass[i];
+        double xAccel = rowX[row];
+        double yAccel = rowY[row];
+
+        for (int j = columnStart; j < columnEnd; j++) {
+            double deltaX = x[j] - xi;
+            double deltaY = y[j] - yi;
+            double distSquared = deltaX * deltaX + deltaY * deltaY + softeningSquared;
+            double inverseCube = 1.0 / (distSquared * Math.sqrt(distSquared));
+            double forceX = deltaX * inverseCube;
+            double forceY = deltaY * inverseCube;
+            xAccel += mass[j] * forceX;
+            yAccel += mass[j] * forceY;
+            ax[j] -= massI * forceX;
+            ay[j] -= massI * forceY;
+        }
+
+        rowX[row] = xAccel;
+        rowY[row] = yAccel;
+
+    }
+
+    /*
+     * Times the first rows of a universe with every pair of candidate tile
+     * sizes, sweeping through all the pairs untimed first so the code is
+     * compiled, then timing further sweeps, and keeps the pair with the
+     * fastest time. The accelerations left behind are overwritten by the
+     * calculation that follows
+     */
+    private void tune(ParticleStore particles, boolean pairs) {
+
+        int rows = Math.min(particles.size(), TUNE_ROWS);
+        long fastest = Long.MAX_VALUE;
+        int bestRows = rowTile;
+        int bestColumns = columnTile;
+
+        for (int sweep = 0; sweep < WARM_UP_SWEEPS + TIMED_SWEEPS; sweep++) {
+            for (int rowCandidate : ROW_TILES) {
+                for (int columnCandidate : COLUMN_TILES) {
+                    rowTile = rowCandidate;
+                    columnTile = columnCandidate;
+                    long elapsed = time(particles, rows, pairs);
+                    if (sweep >= WARM_UP_SWEEPS && elapsed < fastest) {
+                        fastest = elapsed;
+                        bestRows = rowCandidate;
+                        bestColumns = columnCandidate;
+                    }
+                }
+            }
+        }
+
+        rowTile = bestRows;
+        columnTile = bestColumns;
+        tuned = true;
+
+    }
+
+    /*
+     * Returns the nanoseconds taken to calculate the first rows of a universe
+     * with the current tile sizes
+     */
+    private long time(ParticleStore particles, int rows, boolean pairs) {
+
+        long start = System.nanoTime();
+        if (pairs) {
+            pullPairs(particles, 0, rows);
+        } else {
+            accelerate(particles, 0, rows);
+        }
+
+        return System.nanoTime() - start;
+
+    }
+
+}
@@ -0,0 +1,427 @@
+package nbodies;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Records a running simulation to disk: the state of the particles every k-th
+ * step is streamed to a trajectory file, and every m-th step a checkpoint is
+ * saved as a binary universe file that a simulation can be restarted from.
+ * The simulation thread only copies the particles into one of a fixed set of
+ * frames and queues it; a background thread does all the writing. The
+ * simulation only waits when every frame is still queued for writing.
+ * <p>
+ * The trajectory file is little-endian: the magic number, the format version,
+ * the largest amount of particles N, four bytes of padding and the radius of
+ * the universe, followed by one record per recorded step holding the
+ * simulation time, the amount of particles n, four bytes of padding, then n x
+ * coordinates, n y coordinates, n x velocities, n y velocities and n masses
+ * as doubles, n particle ids as ints and four bytes of padding if n is odd.
+ * A particle's id is its place in the universe file, so particles can be
+ * followed from record to record after collided particles have merged.
+ * Version 1 files had no masses or ids.
+ * Checkpoints are written to a temporary file first and then moved over the
+ * previous checkpoint, so a crash never leaves a partial checkpoint behind.
+ * A recording resumed from a checkpoint appends to the trajectory file it
+ * recorded before, once its header is found to match the universe, cutting
+ * off any partial record and the records after the checkpoint, which the
+ * resumed simulation records again
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class TrajectoryRecorder implements AutoCloseable {
+
+    public static final int MAGIC = 0x4e42_5452; // "NBTR"
+    public static final int VERSION = 2;
+    public static final int DEFAULT_QUEUE_DEPTH = 8; // frames that can wait to be written
+
+    private static final int HEADER_BYTES = 24; // bytes of the header of a trajectory file
+    private static final int RECORD_HEADER_BYTES = 16; // bytes of a record before its particles
+    private static final int PARTICLE_BYTES = 5 * 8 + 4; // bytes of each particle of a record, before padding
+
+    private final Path checkpointFile; // file checkpoints are saved to, null for none
+    private final int recordEvery; // steps between recorded trajectory frames, 0 for none
+    private final int checkpointEvery; // steps between checkpoints, 0 for none
+    private final double radius; // radius of the universe
+
+    private final FileChannel trajectory; // trajectory file, null for none
+    private final ByteBuffer record; // buffer a trajectory record is encoded in
+    private final BlockingQueue<Frame> free; // frames ready to be filled
+    private final BlockingQueue<Frame> queued; // frames waiting to be written
+    private final Thread writer; // thread writing the queued frames
+    private volatile IOException failure; // first error of the writer thread
+    private long steps = 0; // steps completed since the recording started
+    private double lastTime; // simulation time the last step completed at
+
+    /**
+     * Starts recording a simulation. A simulation starting after time zero is
+     * taken to resume from a checkpoint, and if its trajectory file exists the
+     * records are appended to it
+     *
+     * @param trajectoryFile The file the trajectory is streamed to, or null to
+     *            record no trajectory
+     * @param stepsPerRecord Amount of steps between trajectory records
+     * @param checkpoint The file checkpoints are saved to, or null to save no
+     *            checkpoints
+     * @param stepsPerCheckpoint Amount of steps between checkpoints
+     * @param particles The particles of the simulation
+     * @param universeRadius The radius of the universe
+     * @param simulationTime The simulation time the recording starts at
+     * @throws IOException if the trajectory file cannot be created, or a
+     *             trajectory file being resumed does not match the universe
+     * @throws IllegalArgumentException if an amount of steps is less than 1
+     */
+    public TrajectoryRecorder(Path trajectoryFile, int stepsPerRecord, Path checkpoint, int stepsPerCheckpoint, ParticleStore particles, double universeRadius,
+            double simulationTime) throws IOException {
+
+        if (stepsPerRecord < 1 || stepsPerCheckpoint < 1) {
+            throw new IllegalArgumentException("steps between records and checkpoints must be at least 1");
+        }
+
+        int n = particles.size();
+        checkpointFile = checkpoint;
+        recordEvery = trajectoryFile == null ? 0 : stepsPerRecord;
+        checkpointEvery = checkpoint == null ? 0 : stepsPerCheckpoint;
+        radius = universeRadius;
+        lastTime = simulationTime;
+
+        free = new ArrayBlockingQueue<>(DEFAULT_QUEUE_DEPTH);
+        queued = new ArrayBlockingQueue<>(DEFAULT_QUEUE_DEPTH + 1);
+        for (int f = 0; f < DEFAULT_QUEUE_DEPTH; f++) {
+            free.add(new Frame(n));
+        }
+
+        if (trajectoryFile == null) {
+            trajectory = null;
+            record = null;
+        } else {
+            record = ByteBuffer.allocateDirect((int) Math.max(HEADER_BYTES, recordBytes(n))).order(ByteOrder.LITTLE_ENDIAN);
+            if (simulationTime > 0.0 && Files.exists(trajectoryFile)) {
+                long end = resumePoint(trajectoryFile, n, universeRadius, simulationTime);
+                trajectory = FileChannel.open(trajectoryFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                trajectory.truncate(end);
+            } else {
+                trajectory = FileChannel.open(trajectoryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                record.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(0).putDouble(universeRadius).flip();
+                writeFully(record);
+            }
+        }
+
+        writer = new Thread(this::writeFrames, "trajectory-writer");
+        writer.start();
+
+    }
+
+    /**
+     * Whether the particles will be recorded when the next simulation step
+     * completes, because a trajectory record or checkpoint is due
+     *
+     * @return True if the next step completed is recorded
+     */
+    public boolean isDue() {
+
+        long next = steps + 1;
+
+        return recordEvery > 0 && next % recordEvery == 0 || checkpointEvery > 0 && next % checkpointEvery == 0;
+
+    }
+
+    /**
+     * Tells the recorder a simulation step has completed, recording the
+     * particles if a trajectory record or checkpoint is due
+     *
+     * @param particles The particles of the simulation
+     * @param time The simulation time the step completed at
+     * @throws UncheckedIOException if writing an earlier record failed
+     */
+    public void stepCompleted(ParticleStore particles, double time) {
+
+        steps++;
+        lastTime = time;
+        boolean recordDue = recordEvery > 0 && steps % recordEvery == 0;
+        boolean checkpointDue = checkpointEvery > 0 && steps % checkpointEvery == 0;
+
+        if (recordDue || checkpointDue) {
+            queue(particles, time, recordDue, checkpointDue);
+        }
+    }
+
+    /**
+     * Saves a checkpoint of the particles as they were when the last step
+     * completed, regardless of when the next checkpoint is due
+     *
+     * @param particles The particles of the simulation
+     * @throws UncheckedIOException if writing an earlier record failed
+     */
+    public void checkpoint(ParticleStore particles) {
+
+        if (checkpointFile != null) {
+            queue(particles, lastTime, false, true);
+        }
+    }
+
+    /**
+     * Writes every queued frame, then stops the writer thread and closes the
+     * trajectory file
+     *
+     * @throws IOException if writing a record failed
+     */
+    @Override
+    public void close() throws IOException {
+
+        putUninterruptibly(queued, Frame.END);
+
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (trajectory != null) {
+            trajectory.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /*
+     * Checks that an existing trajectory file was recorded from the universe
+     * being resumed and returns where its records should be cut off: after the
+     * last complete record at or before the time the simulation resumes from.
+     * Records are written in order of time, so a record no later than the one
+     * before it is left over from a write that never completed
+     */
+    private long resumePoint(Path file, int n, double universeRadius, double simulationTime) throws IOException {
+
+        try (FileChannel existing = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            long size = existing.size();
+            if (!readAt(existing, 0, HEADER_BYTES) || record.getInt() != MAGIC) {
+                throw new IOException(file + " is not a trajectory file, so the simulation cannot be resumed into it");
+            }
+            int version = record.getInt();
+            int largest = record.getInt();
+            record.getInt();
+            double fileRadius = record.getDouble();
+            if (version != VERSION || largest < n || fileRadius != universeRadius) {
+                throw new IOException(file + " was not recorded from the universe being resumed, so the simulation cannot be resumed into it");
+            }
+
+            long end = HEADER_BYTES;
+            double lastTime = Double.NEGATIVE_INFINITY;
+            while (readAt(existing, end, RECORD_HEADER_BYTES)) {
+                double recordTime = record.getDouble();
+                int count = record.getInt();
+                if (count < 0 || count > largest) {
+                    throw new IOException(file + " has a corrupt record at byte " + end);
+                }
+                long next = end + recordBytes(count);
+                if (next > size || !(recordTime > lastTime) || recordTime > simulationTime) {
+                    break;
+                }
+                end = next;
+                lastTime = recordTime;
+            }
+
+            return end;
+
+        }
+    }
+
+    /*
+     * Reads bytes of a file at a position into the record buffer, returning
+     * false if the file ends first
+     */
+    private boolean readAt(FileChannel file, long position, int bytes) throws IOException {
+
+        record.clear().limit(bytes);
+        while (record.hasRemaining()) {
+            if (file.read(record, position + record.position()) < 0) {
+                return false;
+            }
+        }
+        record.flip();
+
+        return true;
+
+    }
+
+    /*
+     * Copies the particles into a free frame and queues it for writing
+     */
+    private void queue(ParticleStore particles, double time, boolean isRecord, boolean isCheckpoint) {
+
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+
+        Frame frame = takeUninterruptibly(free);
+        frame.particles.copyFrom(particles);
+        frame.time = time;
+        frame.isRecord = isRecord;
+        frame.isCheckpoint = isCheckpoint;
+        putUninterruptibly(queued, frame);
+
+    }
+
+    /*
+     * Body of the writer thread: writes queued frames until the end is queued
+     */
+    private void writeFrames() {
+
+        while (true) {
+            Frame frame = takeUninterruptibly(queued);
+            if (frame == Frame.END) {
+                return;
+            }
+
+            try {
+                if (failure == null && frame.isRecord) {
+                    writeRecord(frame);
+                }
+                if (failure == null && frame.isCheckpoint) {
+                    writeCheckpoint(frame);
+                }
+            } catch (IOException e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                failure = new IOException(e);
+            }
+
+            putUninterruptibly(free, frame);
+        }
+    }
+
+    /*
+     * Appends a trajectory record for a frame to the trajectory file
+     */
+    private void writeRecord(Frame frame) throws IOException {
+
+        ParticleStore particles = frame.particles;
+        int n = particles.size();
+
+        record.clear();
+        record.putDouble(frame.time);
+        record.putInt(n);
+        record.putInt(0); // keeps the doubles that follow aligned
+        record.asDoubleBuffer().put(particles.x, 0, n).put(particles.y, 0, n).put(particles.vx, 0, n).put(particles.vy, 0, n).put(particles.mass, 0, n);
+        record.position(record.position() + 5 * 8 * n);
+        record.asIntBuffer().put(particles.id, 0, n);
+        record.position(record.position() + 4 * n);
+        if (n % 2 != 0) {
+            record.putInt(0); // keeps the next record aligned
+        }
+        record.flip();
+        writeFully(record);
+
+    }
+
+    /*
+     * Saves a frame as the new checkpoint
+     */
+    private void writeCheckpoint(Frame frame) throws IOException {
+
+        Path partial = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".partial");
+        new BinaryUniverse(frame.particles, radius, frame.time).write(partial);
+        Files.move(partial, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    }
+
+    /*
+     * Returns the bytes of a record of a given amount of particles
+     */
+    private static long recordBytes(int n) {
+        return RECORD_HEADER_BYTES + (long) PARTICLE_BYTES * n + (n % 2) * 4;
+    }
+
+    /*
+     * Writes the whole of a buffer to the trajectory file
+     */
+    private void writeFully(ByteBuffer buffer) throws IOException {
+
+        while (buffer.hasRemaining()) {
+            trajectory.write(buffer);
+        }
+    }
+
+    /*
+     * Takes the head of a queue, waiting for it without giving up when
+     * interrupted
+     */
+    private static Frame takeUninterruptibly(BlockingQueue<Frame> queue) {
+
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Adds to the tail of a queue, waiting for room without giving up when
+     * interrupted
+     */
+    private static void putUninterruptibly(BlockingQueue<Frame> queue, Frame frame) {
+
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    queue.put(frame);
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * A copy of the particles at one step, and what should be written of it
+     */
+    private static final class Frame {
+
+        static final Frame END = new Frame(0); // queued to stop the writer thread
+
+        final ParticleStore particles;
+        double time;
+        boolean isRecord;
+        boolean isCheckpoint;
+
+        Frame(int capacity) {
+            particles = new ParticleStore(capacity);
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package nbodies;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Converts universes between text data files and binary universe files. Takes
+ * in 2 command line arguments: the file to convert and the file to write. A
+ * file is treated as a binary universe file if its name ends in ".nbu", and as
+ * a text data file otherwise
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ *
+ */
+
+public final class UniverseConverter {
+
+    private UniverseConverter() {
+    }
+
+    /**
+     * Converts a universe file into a file of the other format, or the same
+     * format. Binary universe files keep the simulation time the universe was
+     * saved at, which text data files cannot hold
+     *
+     * @param from The name of the file to convert
+     * @param to The name of the file to write
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void convert(String from, String to) throws IOException {
+
+        BinaryUniverse universe = NBody.readUniverse(from);
+        ParticleStore particles = universe.getParticles();
+        double radius = universe.getRadius();
+
+        if (BinaryUniverse.isBinary(to)) {
+            new BinaryUniverse(particles, radius, universe.getTime()).write(Paths.get(to));
+        } else {
+            try (FileChannel out = FileChannel.open(Paths.get(to), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                new UniverseWriter(out).write(particles, radius);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+
+        if (args.length != 2) {
+            System.out.println("Incorrect amount of arguments.\nUsage: java UniverseConverter <from file> <to file>");
+            System.exit(NBody.EXIT_FAILURE);
+        }
+
+        try {
+            convert(args[0], args[1]);
+        } catch (IOException e) {
+            System.out.println("Could not convert " + args[0] + ": " + e.getMessage());
+            System.exit(NBody.EXIT_FAILURE);
+        }
+
+        System.exit(NBody.EXIT_SUCCESS);
+
+    }
+
+}
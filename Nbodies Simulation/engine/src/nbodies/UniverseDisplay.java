@@ -0,0 +1,35 @@
+package nbodies;
+
+/**
+ * Shows a universe while it is simulated. The simulation publishes a snapshot
+ * of the particles after every step and the display draws them in its own
+ * time. The engine itself never draws; displays are provided by a front end
+ * module and found with a ServiceLoader, so a simulation run without a display
+ * never loads any user interface classes
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public interface UniverseDisplay {
+
+    /**
+     * Shows the initial state of a universe and starts drawing the snapshots
+     * published by the simulation
+     *
+     * @param snapshots The buffer the simulation publishes snapshots into
+     * @param particles The particles of the universe in their initial state
+     * @param radius The radius of the universe
+     */
+    void start(SnapshotBuffer snapshots, ParticleStore particles, double radius);
+
+    /**
+     * Draws the newest snapshot, which is the final state of the universe, and
+     * stops drawing
+     *
+     * @throws InterruptedException if interrupted while waiting for the last
+     *             frame to be drawn
+     */
+    void finish() throws InterruptedException;
+
+}
@@ -0,0 +1,493 @@
+package nbodies;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Parses text data files straight from their bytes. The file is memory mapped
+ * and tokenized on any run of spaces, tabs and carriage returns, so padded
+ * columns and Windows line endings are read as well as single spaces. Numbers
+ * are parsed from the mapped bytes without building a String, and image names
+ * are only turned into Strings when they differ from the previous particle's.
+ * After the amount of particles N and the radius of the universe, every line
+ * that is not blank holds a particle; once N particles are read the rest of
+ * the file, such as a description of the universe, is ignored.
+ * <p>
+ * Large files are split into chunks at line breaks that are parsed on several
+ * threads: the lines holding particles are counted in each chunk first, so
+ * every chunk knows the index of its first particle and fills its part of the
+ * particle arrays directly
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class UniverseParser {
+
+    public static final int PARALLEL_BYTES = 1 << 22; // smallest file parsed in chunks
+    public static final int MIN_CHUNK_BYTES = 1 << 20; // smallest chunk worth a thread of its own
+
+    private static final long MAX_EXACT = 1L << 53; // largest mantissa every smaller integer of is a double
+    private static final int MAX_DIGITS = 18; // significant digits that always fit in a long
+    private static final double[] POWERS = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+            1e20, 1e21, 1e22 }; // powers of ten that are exactly doubles
+    private static final long[] LONG_POWERS = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L, 10000000000L,
+            100000000000L, 1000000000000L, 10000000000000L, 100000000000000L, 1000000000000000L, 10000000000000000L }; // powers of ten up to 2^53
+
+    private final ByteBuffer bytes; // the mapped file
+    private final String name; // name of the file, for error messages
+    private int position; // next byte to read
+    private final Map<String, Integer> images = new HashMap<>(); // image file to index in this parser's image table
+    private final List<String> imageTable = new ArrayList<>(); // distinct image files in the order they were found
+    private int particlesRead = 0; // particles this parser has read
+    private int lastImage = -1; // image index of the last particle parsed, -1 before the first
+    private int lastStart; // where the name of the last image was in the file
+    private int lastLength; // length of the name of the last image
+
+    private UniverseParser(ByteBuffer buffer, String fileName, int start) {
+
+        bytes = buffer;
+        name = fileName;
+        position = start;
+
+    }
+
+    /**
+     * Parses a text data file, in chunks on several threads if it is large
+     *
+     * @param file The text data file
+     * @return The particles of the universe with its radius, at simulation
+     *         time zero
+     * @throws IOException if the file cannot be read or is not a valid data
+     *             file
+     */
+    public static BinaryUniverse parse(Path file) throws IOException {
+
+        long size = Files.size(file);
+        int chunks = 1;
+        if (size >= PARALLEL_BYTES) {
+            chunks = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), size / MIN_CHUNK_BYTES));
+        }
+
+        return parse(file, chunks);
+
+    }
+
+    /**
+     * Parses a text data file in a given amount of chunks, each on its own
+     * thread
+     *
+     * @param file The text data file
+     * @param chunks The amount of chunks the particles are split into
+     * @return The particles of the universe with its radius, at simulation
+     *         time zero
+     * @throws IOException if the file cannot be read or is not a valid data
+     *             file
+     */
+    public static BinaryUniverse parse(Path file, int chunks) throws IOException {
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to parse");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        String fileName = file.toString();
+        UniverseParser header = new UniverseParser(buffer, fileName, 0);
+        header.skipWhitespace();
+        int n = header.count();
+        header.skipWhitespace();
+        double radius = header.number();
+        header.nextLine();
+
+        int[] starts = split(buffer, Math.min(header.position, buffer.limit()), Math.max(1, chunks));
+        UniverseParser[] parsers = new UniverseParser[starts.length - 1];
+        int[] first = new int[parsers.length + 1]; // index of the first particle of each chunk
+        for (int c = 0; c < parsers.length; c++) {
+            parsers[c] = new UniverseParser(buffer, fileName, starts[c]);
+        }
+        if (parsers.length > 1) {
+            IntStream.range(0, parsers.length).parallel().forEach(c -> first[c + 1] = parsers[c].countLines(starts[c + 1]));
+            for (int c = 0; c < parsers.length; c++) {
+                first[c + 1] += first[c];
+            }
+        }
+
+        ParticleStore particles = new ParticleStore(n);
+        try {
+            IntStream range = IntStream.range(0, parsers.length);
+            (parsers.length > 1 ? range.parallel() : range).forEach(c -> {
+                try {
+                    parsers[c].parseParticles(particles, first[c], n, starts[c + 1]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        int read = Math.min(n, parsers.length > 1 ? first[parsers.length] : parsers[0].particlesRead);
+        if (read < n) {
+            throw new IOException(fileName + " holds " + read + " of its " + n + " particles");
+        }
+
+        particles.load(n, mergeImages(parsers, particles, first, n));
+
+        return new BinaryUniverse(particles, radius, 0.0);
+
+    }
+
+    /*
+     * Finds where each chunk of the particle lines starts, at the beginning of
+     * a line, with the end of the file after the last chunk. Chunks that
+     * would start inside an earlier one are dropped
+     */
+    private static int[] split(ByteBuffer buffer, int start, int chunks) {
+
+        int end = buffer.limit();
+        List<Integer> starts = new ArrayList<>();
+        starts.add(start);
+        for (int c = 1; c < chunks; c++) {
+            int p = start + (int) ((long) (end - start) * c / chunks);
+            while (p < end && buffer.get(p - 1) != '\n') {
+                p++;
+            }
+            if (p > starts.get(starts.size() - 1) && p < end) {
+                starts.add(p);
+            }
+        }
+        starts.add(end);
+
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+
+    }
+
+    /*
+     * Builds the image table of the whole universe from the tables of the
+     * chunks, and points the image indexes of each chunk's particles into it
+     */
+    private static String[] mergeImages(UniverseParser[] parsers, ParticleStore particles, int[] first, int n) {
+
+        Map<String, Integer> table = new LinkedHashMap<>();
+        for (int c = 0; c < parsers.length; c++) {
+            int[] remap = new int[parsers[c].imageTable.size()];
+            for (int k = 0; k < remap.length; k++) {
+                remap[k] = table.computeIfAbsent(parsers[c].imageTable.get(k), image -> table.size());
+            }
+            int to = parsers.length > 1 ? Math.min(n, first[c + 1]) : n;
+            for (int i = first[c]; i < to; i++) {
+                particles.image[i] = remap[particles.image[i]];
+            }
+        }
+
+        return table.keySet().toArray(new String[0]);
+
+    }
+
+    /*
+     * Counts the lines holding anything but whitespace from the parser's
+     * position up to the end of its chunk
+     */
+    private int countLines(int end) {
+
+        int lines = 0;
+        boolean filled = false;
+        for (int p = position; p < end; p++) {
+            byte b = bytes.get(p);
+            if (b == '\n') {
+                lines += filled ? 1 : 0;
+                filled = false;
+            } else if (b > ' ') {
+                filled = true;
+            }
+        }
+
+        return lines + (filled ? 1 : 0);
+
+    }
+
+    /*
+     * Parses the particle lines of a chunk into the store, starting with the
+     * particle of the given index, and stops once n particles are read. A
+     * particle line holds the x and y coordinates, the x and y velocities,
+     * the mass, the image file and optionally the collision radius
+     */
+    private void parseParticles(ParticleStore particles, int index, int n, int end) throws IOException {
+
+        int i = index;
+        while (i < n) {
+            skipBlankLines(end);
+            if (position >= end) {
+                break;
+            }
+            particles.x[i] = number();
+            skipBlanks();
+            particles.y[i] = number();
+            skipBlanks();
+            particles.vx[i] = number();
+            skipBlanks();
+            particles.vy[i] = number();
+            skipBlanks();
+            particles.mass[i] = number();
+            skipBlanks();
+            particles.image[i] = image(i);
+            skipBlanks();
+            if (position < bytes.limit() && bytes.get(position) != '\n') {
+                particles.radius[i] = number();
+            }
+            nextLine();
+            i++;
+        }
+
+        particlesRead = i - index;
+
+    }
+
+    /*
+     * Skips spaces, tabs and carriage returns, staying on the current line
+     */
+    private void skipBlanks() {
+        while (position < bytes.limit() && bytes.get(position) <= ' ' && bytes.get(position) != '\n') {
+            position++;
+        }
+    }
+
+    /*
+     * Skips whitespace, line breaks included
+     */
+    private void skipWhitespace() {
+        while (position < bytes.limit() && bytes.get(position) <= ' ') {
+            position++;
+        }
+    }
+
+    /*
+     * Skips whitespace and lines holding nothing else, stopping at the start
+     * of the first token or at the end of the chunk
+     */
+    private void skipBlankLines(int end) {
+        while (position < end && bytes.get(position) <= ' ') {
+            position++;
+        }
+    }
+
+    /*
+     * Moves to the start of the next line
+     */
+    private void nextLine() {
+
+        while (position < bytes.limit() && bytes.get(position) != '\n') {
+            position++;
+        }
+        position++;
+
+    }
+
+    /*
+     * Parses the amount of particles from the token at the position
+     */
+    private int count() throws IOException {
+
+        long value = 0;
+        int start = position;
+        while (position < bytes.limit() && bytes.get(position) > ' ') {
+            int digit = bytes.get(position) - '0';
+            if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) {
+                throw malformed(start);
+            }
+            value = 10 * value + digit;
+            position++;
+        }
+
+        if (position == start || value > Integer.MAX_VALUE) {
+            throw malformed(start);
+        }
+
+        return (int) value;
+
+    }
+
+    /*
+     * Parses a decimal number, optionally signed and with an exponent, from
+     * the token at the position. Up to 18 significant digits are gathered
+     * into a long; when the result is a product or quotient of two exactly
+     * represented doubles it is correctly rounded by a single operation,
+     * anything else is handed to Double.parseDouble
+     */
+    private double number() throws IOException {
+
+        int start = position;
+        int limit = bytes.limit();
+        boolean negative = false;
+        if (position < limit && (bytes.get(position) == '-' || bytes.get(position) == '+')) {
+            negative = bytes.get(position) == '-';
+            position++;
+        }
+
+        long mantissa = 0;
+        int digits = 0; // significant digits gathered
+        int exponent = 0; // power of ten the mantissa is scaled by
+        boolean seen = false; // whether there was any digit
+        boolean truncated = false; // whether significant digits were dropped
+        boolean fraction = false;
+        while (position < limit) {
+            byte b = bytes.get(position);
+            if (b >= '0' && b <= '9') {
+                seen = true;
+                if (digits < MAX_DIGITS) {
+                    if (mantissa > 0 || b != '0') {
+                        digits++;
+                    }
+                    mantissa = 10 * mantissa + (b - '0');
+                    exponent -= fraction ? 1 : 0;
+                } else {
+                    truncated |= b != '0';
+                    exponent += fraction ? 0 : 1;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+            position++;
+        }
+
+        if (seen && position < limit && (bytes.get(position) == 'e' || bytes.get(position) == 'E')) {
+            position++;
+            boolean negativeExponent = false;
+            if (position < limit && (bytes.get(position) == '-' || bytes.get(position) == '+')) {
+                negativeExponent = bytes.get(position) == '-';
+                position++;
+            }
+            int power = 0;
+            int powerStart = position;
+            while (position < limit && bytes.get(position) >= '0' && bytes.get(position) <= '9') {
+                power = Math.min(10 * power + (bytes.get(position) - '0'), 100000);
+                position++;
+            }
+            if (position == powerStart) {
+                throw malformed(start);
+            }
+            exponent += negativeExponent ? -power : power;
+        }
+
+        if (!seen || (position < limit && bytes.get(position) > ' ')) {
+            throw malformed(start);
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+
+        if (!truncated && mantissa <= MAX_EXACT) {
+            double value = Double.NaN;
+            if (exponent >= 0 && exponent < POWERS.length) {
+                value = mantissa * POWERS[exponent];
+            } else if (exponent < 0 && -exponent < POWERS.length) {
+                value = mantissa / POWERS[-exponent];
+            } else if (exponent >= POWERS.length && exponent - (POWERS.length - 1) < LONG_POWERS.length
+                    && mantissa <= MAX_EXACT / LONG_POWERS[exponent - (POWERS.length - 1)]) {
+                value = (mantissa * LONG_POWERS[exponent - (POWERS.length - 1)]) * POWERS[POWERS.length - 1];
+            }
+            if (!Double.isNaN(value)) {
+                return negative ? -value : value;
+            }
+        }
+
+        byte[] token = new byte[position - start];
+        bytes.get(start, token);
+
+        return Double.parseDouble(new String(token, StandardCharsets.US_ASCII));
+
+    }
+
+    /*
+     * Parses the image file of a particle from the token at the position and
+     * returns its index in this parser's image table. A particle with the same
+     * image as the particle before it reuses its index without building a
+     * String
+     */
+    private int image(int particle) throws IOException {
+
+        int start = position;
+        while (position < bytes.limit() && bytes.get(position) > ' ') {
+            position++;
+        }
+        int length = position - start;
+        if (length == 0) {
+            throw new IOException(name + ": particle " + (particle + 1) + " has no image file");
+        }
+
+        if (lastImage >= 0 && sameAsLast(start, length)) {
+            lastStart = start;
+            return lastImage;
+        }
+
+        byte[] token = new byte[length];
+        bytes.get(start, token);
+        String imageFile = new String(token, StandardCharsets.UTF_8);
+        Integer index = images.get(imageFile);
+        if (index == null) {
+            index = imageTable.size();
+            images.put(imageFile, index);
+            imageTable.add(imageFile);
+        }
+
+        lastImage = index;
+        lastStart = start;
+        lastLength = length;
+
+        return index;
+
+    }
+
+    /*
+     * Whether a token holds the same bytes as the name of the last image
+     */
+    private boolean sameAsLast(int start, int length) {
+
+        if (length != lastLength) {
+            return false;
+        }
+        for (int k = 0; k < length; k++) {
+            if (bytes.get(start + k) != bytes.get(lastStart + k)) {
+                return false;
+            }
+        }
+
+        return true;
+
+    }
+
+    /*
+     * The error of a token that is not the number it should be
+     */
+    private IOException malformed(int start) {
+
+        int end = start;
+        while (end < bytes.limit() && bytes.get(end) > ' ' && end - start < 40) {
+            end++;
+        }
+        byte[] token = new byte[end - start];
+        bytes.get(start, token);
+
+        return new IOException(name + ": expected a number at byte " + start + " but found \"" + new String(token, StandardCharsets.UTF_8) + "\"");
+
+    }
+
+}
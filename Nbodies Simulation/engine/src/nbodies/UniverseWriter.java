@@ -0,0 +1,279 @@
+package nbodies;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Writes universes in the format of the text data files without a Formatter.
+ * Lines are encoded straight into a reusable byte buffer, which is handed to
+ * a stream or a channel whenever it fills up, so a universe of a million
+ * particles is written in a few hundred large blocks. Numbers are written as
+ * String.format("%7.4e") writes them: the value is scaled by a power of ten to
+ * its five significant digits and rounded, and the few values whose scaled
+ * value lies so close to halfway between two roundings that the scaling error
+ * could matter, or that are not finite or too small to scale, are formatted
+ * with String.format instead
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class UniverseWriter {
+
+    public static final int BUFFER_SIZE = 1 << 16; // bytes gathered before they are written out
+
+    private static final int DIGITS = 5; // significant digits of a number, one before the point and four after
+    private static final int MIN_POWER = -300; // smallest power of ten a number is scaled by
+    private static final int MAX_POWER = 308; // largest power of ten a number is scaled by
+    private static final double TIE_MARGIN = 1e-6; // distance from halfway at which the rounding is left to String.format
+    private static final int MAX_NUMBER = 16; // most bytes a number takes, with its leading space
+    private static final double[] POWERS = new double[MAX_POWER - MIN_POWER + 1]; // correctly rounded powers of ten
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        for (int k = MIN_POWER; k <= MAX_POWER; k++) {
+            POWERS[k - MIN_POWER] = Double.parseDouble("1e" + k);
+        }
+    }
+
+    private final OutputStream stream; // where full buffers go, null when writing to the channel
+    private final WritableByteChannel channel; // where full buffers go, null when writing to the stream
+    private byte[] buffer = new byte[BUFFER_SIZE]; // bytes not written out yet
+    private int count = 0; // amount of bytes in the buffer
+    private String lastImage = null; // image file of the last particle written
+    private byte[] lastImageBytes = null; // the image file encoded in UTF-8
+
+    /**
+     * Constructs a writer to a stream. The stream is flushed but not closed
+     * after each universe
+     *
+     * @param out The stream to write to
+     */
+    public UniverseWriter(OutputStream out) {
+
+        stream = out;
+        channel = null;
+
+    }
+
+    /**
+     * Constructs a writer to a channel, such as a file channel. The channel is
+     * not closed
+     *
+     * @param out The channel to write to
+     */
+    public UniverseWriter(WritableByteChannel out) {
+
+        stream = null;
+        channel = out;
+
+    }
+
+    /**
+     * Writes a universe in the format of the text data files: the amount of
+     * particles, the radius of the universe, then a line of data per particle,
+     * ending with the particle's collision radius if it has one
+     *
+     * @param particles The particles of the universe
+     * @param radius The radius of the universe
+     * @throws IOException if the universe cannot be written
+     */
+    public void write(ParticleStore particles, double radius) throws IOException {
+
+        writeText(Integer.toString(particles.size()));
+        writeText(Double.toString(radius));
+
+        for (int i = 0; i < particles.size(); i++) {
+            byte[] image = imageBytes(particles.getImg(i));
+            reserve(6 * MAX_NUMBER + image.length + LINE_SEPARATOR.length);
+            count = scientific(particles.getX(i), buffer, count);
+            buffer[count++] = ' ';
+            count = scientific(particles.getY(i), buffer, count);
+            buffer[count++] = ' ';
+            count = scientific(particles.getXVelocity(i), buffer, count);
+            buffer[count++] = ' ';
+            count = scientific(particles.getYVelocity(i), buffer, count);
+            buffer[count++] = ' ';
+            count = scientific(particles.getMass(i), buffer, count);
+            buffer[count++] = ' ';
+            System.arraycopy(image, 0, buffer, count, image.length);
+            count += image.length;
+            if (particles.getRadius(i) > 0.0) {
+                buffer[count++] = ' ';
+                count = scientific(particles.getRadius(i), buffer, count);
+            }
+            System.arraycopy(LINE_SEPARATOR, 0, buffer, count, LINE_SEPARATOR.length);
+            count += LINE_SEPARATOR.length;
+        }
+
+        flush();
+
+    }
+
+    /**
+     * Writes out the bytes gathered in the buffer
+     *
+     * @throws IOException if the bytes cannot be written
+     */
+    public void flush() throws IOException {
+
+        if (stream != null) {
+            stream.write(buffer, 0, count);
+            stream.flush();
+        } else {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, count);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+
+        count = 0;
+
+    }
+
+    /*
+     * Writes a line of text
+     */
+    private void writeText(String line) throws IOException {
+
+        byte[] text = line.getBytes(StandardCharsets.UTF_8);
+        reserve(text.length + LINE_SEPARATOR.length);
+        System.arraycopy(text, 0, buffer, count, text.length);
+        count += text.length;
+        System.arraycopy(LINE_SEPARATOR, 0, buffer, count, LINE_SEPARATOR.length);
+        count += LINE_SEPARATOR.length;
+
+    }
+
+    /*
+     * Gets an image file encoded in UTF-8, only encoding it when it differs
+     * from the image of the particle before
+     */
+    private byte[] imageBytes(String image) {
+
+        if (!image.equals(lastImage)) {
+            lastImage = image;
+            lastImageBytes = image.getBytes(StandardCharsets.UTF_8);
+        }
+
+        return lastImageBytes;
+
+    }
+
+    /*
+     * Makes room for a given amount of bytes in the buffer, writing it out if
+     * they do not fit behind the bytes already in it
+     */
+    private void reserve(int bytes) throws IOException {
+
+        if (count + bytes > buffer.length) {
+            flush();
+        }
+        if (bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, bytes);
+        }
+    }
+
+    /*
+     * Writes a number into a byte array at an offset as "%7.4e" formats it,
+     * returning the offset after it. The array must have room for 16 bytes
+     */
+    static int scientific(double value, byte[] to, int at) {
+
+        if (value == 0.0) {
+            int p = at;
+            if (Double.doubleToRawLongBits(value) != 0L) {
+                to[p++] = '-';
+            }
+            return digits(0, 0, to, p);
+        }
+
+        double magnitude = Math.abs(value);
+        if (Double.isFinite(value)) {
+            int exponent = (int) Math.floor(Math.log10(magnitude));
+            double scaled = scale(magnitude, exponent);
+            if (scaled >= 100000.0) {
+                exponent++;
+                scaled = scale(magnitude, exponent);
+            } else if (scaled < 10000.0) {
+                exponent--;
+                scaled = scale(magnitude, exponent);
+            }
+
+            double fraction = scaled - Math.floor(scaled);
+            if (scaled >= 10000.0 && scaled < 100000.0 && Math.abs(fraction - 0.5) > TIE_MARGIN) {
+                long mantissa = (long) (scaled + 0.5);
+                if (mantissa == 100000L) {
+                    mantissa = 10000L;
+                    exponent++;
+                }
+                int p = at;
+                if (value < 0.0) {
+                    to[p++] = '-';
+                }
+                return digits(mantissa, exponent, to, p);
+            }
+        }
+
+        byte[] text = String.format(Locale.ROOT, "%7.4e", value).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(text, 0, to, at, text.length);
+
+        return at + text.length;
+
+    }
+
+    /*
+     * Scales a magnitude so a number of the given decimal exponent has five
+     * digits before the point, or gives NaN if the power of ten it takes is
+     * out of range
+     */
+    private static double scale(double magnitude, int exponent) {
+
+        int power = exponent - (DIGITS - 1);
+        if (power < MIN_POWER || power > MAX_POWER) {
+            return Double.NaN;
+        }
+
+        return power >= 0 ? magnitude / POWERS[power - MIN_POWER] : magnitude * POWERS[-power - MIN_POWER];
+
+    }
+
+    /*
+     * Writes five significant digits as d.dddd followed by the exponent,
+     * which has a sign and at least two digits
+     */
+    private static int digits(long mantissa, int exponent, byte[] to, int at) {
+
+        int p = at;
+        long rest = mantissa;
+        to[p + 5] = (byte) ('0' + rest % 10);
+        rest /= 10;
+        to[p + 4] = (byte) ('0' + rest % 10);
+        rest /= 10;
+        to[p + 3] = (byte) ('0' + rest % 10);
+        rest /= 10;
+        to[p + 2] = (byte) ('0' + rest % 10);
+        rest /= 10;
+        to[p + 1] = '.';
+        to[p] = (byte) ('0' + rest);
+        p += DIGITS + 1;
+
+        to[p++] = 'e';
+        to[p++] = (byte) (exponent < 0 ? '-' : '+');
+        int power = Math.abs(exponent);
+        if (power >= 100) {
+            to[p++] = (byte) ('0' + power / 100);
+        }
+        to[p++] = (byte) ('0' + power / 10 % 10);
+        to[p++] = (byte) ('0' + power % 10);
+
+        return p;
+
+    }
+
+}
@@ -0,0 +1,106 @@
+package nbodies;
+
+/**
+ * Creates the force engines built on the Vector API when the incubating
+ * jdk.incubator.vector module is part of the JVM, which it only is when java
+ * is run with "--add-modules jdk.incubator.vector". Otherwise the scalar
+ * engines computing the same sums are created instead, and the vector classes
+ * are never loaded
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class VectorSupport {
+
+    public static final String MODULE = "jdk.incubator.vector";
+    public static final String VECTOR_DIRECT_SUM = "nbodies.VectorDirectSum";
+    public static final String VECTOR_SYMMETRIC_SUM = "nbodies.VectorSymmetricSum";
+
+    private VectorSupport() {
+    }
+
+    /**
+     * Whether the Vector API module is part of the running JVM
+     *
+     * @return True if the vector force engines can be created
+     */
+    public static boolean isAvailable() {
+        return ModuleLayer.boot().findModule(MODULE).isPresent();
+    }
+
+    /**
+     * Creates a force engine summing the forces directly without softening,
+     * with the Vector API if it is available
+     *
+     * @return A VectorDirectSum if the Vector API is available, otherwise a
+     *         DirectSum
+     */
+    public static RangeForceEngine createDirectSum() {
+        return createDirectSum(0.0);
+    }
+
+    /**
+     * Creates a force engine summing the forces directly, with the Vector API
+     * if it is available
+     *
+     * @param softening The Plummer softening length, 0 for Newtonian forces
+     * @return A VectorDirectSum if the Vector API is available, otherwise a
+     *         DirectSum
+     * @throws IllegalArgumentException if the softening length is negative
+     */
+    public static RangeForceEngine createDirectSum(double softening) {
+
+        RangeForceEngine engine = (RangeForceEngine) create(VECTOR_DIRECT_SUM, softening);
+
+        return engine != null ? engine : new DirectSum(softening);
+
+    }
+
+    /**
+     * Creates a force engine summing the forces directly over every pair of
+     * particles once without softening, with the Vector API if it is
+     * available
+     *
+     * @return A VectorSymmetricSum if the Vector API is available, otherwise a
+     *         SymmetricDirectSum
+     */
+    public static ForceEngine createSymmetricSum() {
+        return createSymmetricSum(0.0);
+    }
+
+    /**
+     * Creates a force engine summing the forces directly over every pair of
+     * particles once, with the Vector API if it is available
+     *
+     * @param softening The Plummer softening length, 0 for Newtonian forces
+     * @return A VectorSymmetricSum if the Vector API is available, otherwise a
+     *         SymmetricDirectSum
+     * @throws IllegalArgumentException if the softening length is negative
+     */
+    public static ForceEngine createSymmetricSum(double softening) {
+
+        ForceEngine engine = create(VECTOR_SYMMETRIC_SUM, softening);
+
+        return engine != null ? engine : new SymmetricDirectSum(softening);
+
+    }
+
+    /*
+     * Creates a vector force engine by its class name, or returns null if the
+     * Vector API is unavailable or the engine cannot be created
+     */
+    private static ForceEngine create(String className, double softening) {
+
+        if (!isAvailable()) {
+            return null;
+        }
+
+        try {
+            return (ForceEngine) Class.forName(className).getDeclaredConstructor(double.class).newInstance(softening);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+}
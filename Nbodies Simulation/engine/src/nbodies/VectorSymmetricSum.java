@@ -0,0 +1,118 @@
+package nbodies;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Force engine that visits every unordered pair of particles once, like
+ * SymmetricDirectSum, but pairs a particle with a whole vector of the
+ * particles after it at a time with the Vector API. The particles a vector
+ * holds lie next to each other in the store, so their equal and opposite
+ * accelerations are added back with a single vector store. A Plummer
+ * softening length may be given as in DirectSum. Needs the
+ * jdk.incubator.vector module, so it is only ever created through
+ * VectorSupport, which falls back to SymmetricDirectSum without it
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class VectorSymmetricSum implements ForceEngine {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private final double softeningSquared; // square of the Plummer softening length
+
+    /**
+     * Constructs a new vector symmetric direct sum force engine
+     *
+     * @param softening The Plummer softening length, 0 for Newtonian forces
+     * @throws IllegalArgumentException if the softening length is negative
+     */
+    public VectorSymmetricSum(double softening) {
+
+        if (!(softening >= 0.0)) {
+            throw new IllegalArgumentException("softening must not be negative");
+        }
+
+        softeningSquared = softening * softening;
+
+    }
+
+    @Override
+    public void computeAccelerations(ParticleStore particles) {
+
+        int n = particles.size();
+        double[] x = particles.x;
+        double[] y = particles.y;
+        double[] ax = particles.ax;
+        double[] ay = particles.ay;
+        double[] mass = particles.mass;
+
+        for (int i = 0; i < n; i++) {
+            ax[i] = 0.0;
+            ay[i] = 0.0;
+        }
+
+        for (int i = 0; i < n; i++) {
+
+            double xi = x[i];
+            double yi = y[i];
+            double massI = mass[i];
+            double xAccel = 0.0;
+            double yAccel = 0.0;
+
+            int j = i + 1;
+            int bound = j + SPECIES.loopBound(n - j);
+            if (j < bound) {
+                DoubleVector ones = DoubleVector.broadcast(SPECIES, 1.0);
+                DoubleVector softenings = DoubleVector.broadcast(SPECIES, softeningSquared);
+                DoubleVector xiVector = DoubleVector.broadcast(SPECIES, xi);
+                DoubleVector yiVector = DoubleVector.broadcast(SPECIES, yi);
+                DoubleVector massIVector = DoubleVector.broadcast(SPECIES, -massI);
+                DoubleVector xAccels = DoubleVector.zero(SPECIES);
+                DoubleVector yAccels = DoubleVector.zero(SPECIES);
+
+                for (; j < bound; j += SPECIES.length()) {
+                    DoubleVector deltaX = DoubleVector.fromArray(SPECIES, x, j).sub(xiVector);
+                    DoubleVector deltaY = DoubleVector.fromArray(SPECIES, y, j).sub(yiVector);
+                    DoubleVector distSquared = deltaX.fma(deltaX, deltaY.fma(deltaY, softenings));
+                    DoubleVector inverseCube = ones.div(distSquared.mul(distSquared.sqrt()));
+                    DoubleVector forceX = deltaX.mul(inverseCube);
+                    DoubleVector forceY = deltaY.mul(inverseCube);
+                    DoubleVector massJ = DoubleVector.fromArray(SPECIES, mass, j);
+                    xAccels = massJ.fma(forceX, xAccels);
+                    yAccels = massJ.fma(forceY, yAccels);
+                    massIVector.fma(forceX, DoubleVector.fromArray(SPECIES, ax, j)).intoArray(ax, j);
+                    massIVector.fma(forceY, DoubleVector.fromArray(SPECIES, ay, j)).intoArray(ay, j);
+                }
+
+                xAccel = xAccels.reduceLanes(VectorOperators.ADD);
+                yAccel = yAccels.reduceLanes(VectorOperators.ADD);
+            }
+
+            for (; j < n; j++) {
+                double deltaX = x[j] - xi;
+                double deltaY = y[j] - yi;
+                double distSquared = deltaX * deltaX + deltaY * deltaY + softeningSquared;
+                double inverseCube = 1.0 / (distSquared * Math.sqrt(distSquared));
+                double forceX = deltaX * inverseCube;
+                double forceY = deltaY * inverseCube;
+                xAccel += mass[j] * forceX;
+                yAccel += mass[j] * forceY;
+                ax[j] -= massI * forceX;
+                ay[j] -= massI * forceY;
+            }
+
+            ax[i] += xAccel;
+            ay[i] += yAccel;
+        }
+
+        for (int i = 0; i < n; i++) {
+            ax[i] *= Planet.GRAVITATIONAL_CONSTANT;
+            ay[i] *= Planet.GRAVITATIONAL_CONSTANT;
+        }
+    }
+
+}
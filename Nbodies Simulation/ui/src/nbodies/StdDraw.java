@@ -24,7 +24,9 @@ import java.awt.geom.*;
 import java.awt.image.*;
 import java.io.*;
 import java.net.*;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.TreeSet;
 import javax.imageio.ImageIO;
 import javax.swing.*;
@@ -117,6 +119,17 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
     private static BufferedImage offscreenImage, onscreenImage;
     private static Graphics2D offscreen, onscreen;
 
+    // decoded images by file name, the least recently drawn is dropped first
+    private static final int IMAGE_CACHE_SIZE = 64;
+    private static final Map<String, Image> imageCache = new LinkedHashMap<String, Image>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+            return size() > IMAGE_CACHE_SIZE;
+        }
+    };
+
     // singleton for callbacks: avoids generation of extra .class files
     private static StdDraw std = new StdDraw();
 
@@ -736,8 +749,34 @@ public final class StdDraw implements ActionListener, MouseListener, MouseMotion
      * Drawing images.
      *************************************************************************/
 
-    // get an image from the given filename
+    // get an image from the given filename, decoding it only if it is not cached
     private static Image getImage(String filename) {
+        synchronized (imageCache) {
+            Image image = imageCache.get(filename);
+            if (image == null) {
+                image = toCompatibleImage(loadImage(filename));
+                imageCache.put(filename, image);
+            }
+            return image;
+        }
+    }
+
+    // copy a fully loaded image into the pixel format of the offscreen image,
+    // so drawing it is a plain copy instead of a conversion every frame
+    private static Image toCompatibleImage(Image image) {
+        int w = image.getWidth(null);
+        int h = image.getHeight(null);
+        if (w <= 0 || h <= 0)
+            return image;
+        BufferedImage compatible = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = compatible.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return compatible;
+    }
+
+    // read an image from the given filename
+    private static Image loadImage(String filename) {
 
         // to read from file
         ImageIcon icon = new ImageIcon(filename);
@@ -0,0 +1,73 @@
+package nbodies;
+
+/**
+ * Shows a simulated universe with the StdDraw API while the theme from 2001: A
+ * Space Odyssey plays. The initial universe is drawn straight away, then the
+ * snapshots published by the simulation are drawn by a UniverseRenderer on its
+ * own thread
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class StdDrawDisplay implements UniverseDisplay {
+
+    public static final String SOUNDTRACK_FILE = "audio/2001.mid"; // 2001: A Space Odyssey theme song
+
+    private UniverseRenderer renderer; // draws the snapshots, null until started
+    private Thread renderThread; // thread the renderer runs on
+
+    @Override
+    public void start(SnapshotBuffer snapshots, ParticleStore particles, double radius) {
+
+        drawUniverse(particles, radius);
+        StdAudio.loop(SOUNDTRACK_FILE);
+
+        renderer = new UniverseRenderer(snapshots, particles, radius);
+        renderThread = new Thread(renderer, "renderer");
+        renderThread.setDaemon(true);
+        renderThread.start();
+
+    }
+
+    @Override
+    public void finish() throws InterruptedException {
+
+        renderer.stop();
+        renderThread.join();
+
+    }
+
+    /**
+     * Draw the universe that is being simulated using StdDraw API. Draw the N
+     * particles and make the background a space image. Use the radius of the
+     * universe to scale the canvas
+     *
+     * @param planets An array of Planets (particles) that should be drawn in
+     *            the universe
+     * @param radius The radius of the universe
+     */
+    public static void drawUniverse(Planet[] planets, double radius) {
+        drawUniverse(ParticleStore.of(planets), radius);
+    }
+
+    /**
+     * Draw the universe that is being simulated using StdDraw API. Draw the N
+     * particles and make the background a space image. Use the radius of the
+     * universe to scale the canvas
+     *
+     * @param particles The particles that should be drawn in the universe
+     * @param radius The radius of the universe
+     */
+    public static void drawUniverse(ParticleStore particles, double radius) {
+        StdDraw.setXscale(-radius, radius);
+        StdDraw.setYscale(-radius, radius);
+        StdDraw.picture(0.0, 0.0, UniverseRenderer.BACKGROUND);
+        String[] imageFiles = UniverseRenderer.imageFiles(particles);
+        for (int i = 0; i < particles.size(); i++) {
+            StdDraw.picture(particles.getX(i), particles.getY(i), imageFiles[particles.getImageIndex(i)]);
+
+        }
+    }
+
+}
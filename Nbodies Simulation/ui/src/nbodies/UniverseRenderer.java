@@ -0,0 +1,96 @@
+package nbodies;
+
+/**
+ * Draws snapshots of a universe with the StdDraw API on its own thread at a
+ * steady frame rate, so the simulation never waits on drawing. Each frame the
+ * newest snapshot is drawn; snapshots published in between are never drawn,
+ * and if no new snapshot was published the last frame stays on screen
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class UniverseRenderer implements Runnable {
+
+    public static final int FRAME_MILLIS = 25; // time each frame stays on screen
+    public static final String BACKGROUND = "images/starfield.jpg";
+
+    private final SnapshotBuffer frames; // snapshots published by the simulation
+    private final String[] imageFiles; // image file of every entry of the image table
+    private final double universeSize; // radius of the universe
+    private volatile boolean running = true; // cleared once the simulation is over
+
+    /**
+     * Constructs a renderer for a universe
+     *
+     * @param snapshots The buffer the simulation publishes snapshots into
+     * @param particles The particles of the universe, used for their images
+     * @param radius The radius of the universe
+     */
+    public UniverseRenderer(SnapshotBuffer snapshots, ParticleStore particles, double radius) {
+
+        frames = snapshots;
+        universeSize = radius;
+        imageFiles = imageFiles(particles);
+
+    }
+
+    /**
+     * Get the path of the image file of every entry of a store's image table,
+     * so drawing a particle needs no string to be built
+     *
+     * @param particles The particles whose images are drawn
+     * @return The image file paths, indexed like the image table
+     */
+    public static String[] imageFiles(ParticleStore particles) {
+
+        String[] files = new String[particles.getImageCount()];
+        for (int k = 0; k < files.length; k++) {
+            files[k] = "images/" + particles.getImageName(k);
+        }
+
+        return files;
+
+    }
+
+    @Override
+    public void run() {
+
+        StdDraw.setXscale(-universeSize, universeSize);
+        StdDraw.setYscale(-universeSize, universeSize);
+
+        while (running) {
+            Snapshot frame = frames.take();
+            if (frame != null) {
+                draw(frame);
+            }
+            StdDraw.show(FRAME_MILLIS);
+        }
+
+        // the newest snapshot is the final state of the universe
+        Snapshot last = frames.take();
+        if (last != null) {
+            draw(last);
+            StdDraw.show();
+        }
+    }
+
+    /**
+     * Stops drawing once the newest snapshot has been drawn
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /*
+     * Draws the particles of a snapshot over the background image
+     */
+    private void draw(Snapshot frame) {
+
+        StdDraw.picture(0.0, 0.0, BACKGROUND);
+        for (int i = 0; i < frame.size(); i++) {
+            StdDraw.picture(frame.getX(i), frame.getY(i), imageFiles[frame.getImageIndex(i)]);
+        }
+    }
+
+}
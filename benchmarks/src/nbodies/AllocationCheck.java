@@ -0,0 +1,146 @@
+package nbodies;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that simulation steps allocate nothing on the heap once warmed up.
+ * Every force engine and integrator is run on a universe until the JIT has
+ * compiled the step, then the bytes the thread allocates over further steps
+ * are counted; looking for collisions and publishing a snapshot for a
+ * display are included in each step. Particle meshes are checked with a small
+ * mesh, which runs the same code as a large one in a fraction of the time.
+ * Exits with a failure status if any combination allocated. Run by the build
+ * in the verify phase, or by hand with the names of universes to check
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class AllocationCheck {
+
+    public static final String[] ENGINES = { "direct", "symmetric", "vector", "vector-symmetric", "mixed", "tiled", "barnes-hut", "fmm", "pm-16",
+            "p3m-16", "parallel", "parallel-vector", "parallel-mixed", "parallel-tiled", "parallel-barnes-hut" };
+    public static final String[] INTEGRATORS = { SimulationOptions.EULER_INTEGRATOR, SimulationOptions.LEAPFROG_INTEGRATOR,
+            SimulationOptions.BLOCK_INTEGRATOR, BenchmarkUniverse.ENCOUNTER_INTEGRATOR };
+    public static final String[] DEFAULT_UNIVERSES = { "planets.txt", "uniform-300" };
+
+    public static final int THREADS = 4; // threads of the parallel engines, whatever the processors
+    public static final int WARMUP_STEPS = 500; // fewest steps taken before counting
+    public static final int WARMUP_PARTICLE_STEPS = 100_000; // fewest particle steps taken before counting
+    public static final int MEASURED_STEPS = 200; // steps the allocations are counted over
+    public static final int CALIBRATIONS = 8; // times the bytes allocated by counting are measured
+    public static final double COLLISION_RADIUS = 1.0e-6; // collision radius as a fraction of the universe radius, too small to merge
+
+    private AllocationCheck() {
+    }
+
+    /**
+     * Count the bytes allocated by the steps of every force engine and
+     * integrator on each universe
+     *
+     * @param args The universes to check, or none for the default universes
+     * @throws IOException if a universe data file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String[] universes = args.length > 0 ? args : DEFAULT_UNIVERSES;
+        boolean allocated = false;
+
+        for (String name : universes) {
+            BenchmarkUniverse universe = BenchmarkUniverse.load(name);
+            for (String engineName : ENGINES) {
+                for (String integratorName : INTEGRATORS) {
+                    if (integratorName.equals(SimulationOptions.BLOCK_INTEGRATOR) && engineName.endsWith("symmetric")) {
+                        continue; // block time steps need the forces on some particles only, which pairwise sums cannot give
+                    }
+                    long bytes = measure(threads, universe, engineName, integratorName);
+                    System.out.println(String.format("%-14s %-20s %-9s %8d bytes", name, engineName, integratorName, bytes));
+                    allocated |= bytes > 0;
+                }
+            }
+        }
+
+        if (allocated) {
+            System.out.println("Simulation steps allocated on the heap.");
+            System.exit(NBody.EXIT_FAILURE);
+        }
+
+        System.out.println("Simulation steps allocated nothing.");
+
+    }
+
+    /*
+     * The current thread and the force threads of parallel engines, the only
+     * threads that take part in a step
+     */
+    private static long[] stepThreads() {
+
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread == Thread.currentThread() || thread.getName().startsWith(ParallelForces.THREAD_NAME))
+                .mapToLong(Thread::getId)
+                .toArray();
+
+    }
+
+    /*
+     * Total bytes allocated so far by the given threads
+     */
+    private static long allocatedBytes(com.sun.management.ThreadMXBean threads, long[] ids) {
+
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(ids)) {
+            total += Math.max(bytes, 0);
+        }
+
+        return total;
+
+    }
+
+    /*
+     * Warms up one combination of force engine and integrator, then counts the
+     * bytes allocated over the measured steps, less the most that counting
+     * them was seen to allocate. Small universes take more warm up steps, so
+     * the code run for each particle is compiled however few particles there
+     * are
+     */
+    private static long measure(com.sun.management.ThreadMXBean threads, BenchmarkUniverse universe, String engineName, String integratorName) {
+
+        ParticleStore particles = universe.copy();
+        ForceEngine engine = BenchmarkUniverse.createEngine(engineName, universe.getRadius(), THREADS);
+        Integrator integrator = BenchmarkUniverse.createIntegrator(integratorName, universe.getRadius());
+        CollisionMerger collisions = new CollisionMerger(COLLISION_RADIUS * universe.getRadius());
+        SnapshotBuffer frames = new SnapshotBuffer(particles.size());
+        double dt = universe.getTimeStep();
+        int warmup = Math.max(WARMUP_STEPS, WARMUP_PARTICLE_STEPS / Math.max(particles.size(), 1));
+
+        try {
+            for (int s = 0; s < warmup; s++) {
+                integrator.step(particles, engine, dt);
+                collisions.merge(particles);
+                frames.publish(particles);
+            }
+
+            // counting allocates a little and not always the same, so take the most it allocated
+            long[] ids = stepThreads();
+            long overhead = 0;
+            for (int k = 0; k < CALIBRATIONS; k++) {
+                long start = allocatedBytes(threads, ids);
+                overhead = Math.max(overhead, allocatedBytes(threads, ids) - start);
+            }
+            long before = allocatedBytes(threads, ids);
+            for (int s = 0; s < MEASURED_STEPS; s++) {
+                integrator.step(particles, engine, dt);
+                collisions.merge(particles);
+                frames.publish(particles);
+            }
+
+            return allocatedBytes(threads, ids) - before - overhead;
+
+        } finally {
+            BenchmarkUniverse.shutdown(engine);
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+package nbodies;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * A universe the benchmarks are run on, either one of the data files shipped
+ * with the simulation or a synthetic universe of N particles spread uniformly
+ * over a disc in roughly circular orbits. Synthetic universes are named
+ * "uniform-N" and are the same every time for the same N. Data files are
+ * looked up in the directory named by the nbodies.data system property, the
+ * simulation's data folder by default
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+final class BenchmarkUniverse {
+
+    static final String SYNTHETIC = "uniform-"; // prefix of synthetic universe names
+    static final String DATA_PROPERTY = "nbodies.data"; // system property naming the data folder
+    static final String DEFAULT_DATA = "../Nbodies Simulation/data";
+
+    static final double SYNTHETIC_RADIUS = 1.0e12; // radius of the disc of a synthetic universe
+    static final double SYNTHETIC_MASS = 2.0e30; // mass of the whole synthetic universe
+    static final double STEPS_PER_ORBIT = 1000.0; // time steps per dynamical time of a universe
+    static final long SEED = 20_01L; // seed of the synthetic universes
+    static final String ENCOUNTER_INTEGRATOR = "encounters"; // leapfrog with close encounters sub-stepped
+    static final double ENCOUNTER_DISTANCE = 0.05; // encounter distance as a fraction of the universe radius
+    static final String MESH_SEPARATOR = "-"; // separates the mesh width from a particle mesh engine name, as in "pm-64"
+
+    private final ParticleStore initial; // the particles before any step is taken
+    private final double radius; // radius of the universe
+    private final double timeStep; // time step suited to the universe
+
+    /*
+     * Constructs a benchmark universe from its particles
+     */
+    private BenchmarkUniverse(ParticleStore particles, double universeRadius) {
+
+        initial = particles;
+        radius = universeRadius;
+
+        double totalMass = 0.0;
+        for (int i = 0; i < particles.size(); i++) {
+            totalMass += Math.abs(particles.getMass(i));
+        }
+        double dynamicalTime = Math.sqrt(universeRadius * universeRadius * universeRadius / (Planet.GRAVITATIONAL_CONSTANT * totalMass));
+        timeStep = dynamicalTime / STEPS_PER_ORBIT;
+
+    }
+
+    /*
+     * Loads a data file or builds a synthetic universe by name
+     */
+    static BenchmarkUniverse load(String name) throws IOException {
+
+        if (name.startsWith(SYNTHETIC)) {
+            return synthetic(Integer.parseInt(name.substring(SYNTHETIC.length())));
+        }
+
+        Path file = Paths.get(System.getProperty(DATA_PROPERTY, DEFAULT_DATA), name);
+        BinaryUniverse universe = NBody.readUniverse(file.toString());
+
+        return new BenchmarkUniverse(universe.getParticles(), universe.getRadius());
+
+    }
+
+    /*
+     * Builds a synthetic universe of n equal particles spread uniformly over a
+     * disc, each moving at the circular speed for the mass inside its orbit
+     */
+    static BenchmarkUniverse synthetic(int n) {
+
+        Random random = new Random(SEED + n);
+        ParticleStore particles = new ParticleStore(n);
+        double mass = SYNTHETIC_MASS / n;
+
+        for (int i = 0; i < n; i++) {
+            double angle = 2.0 * Math.PI * random.nextDouble();
+            double r = SYNTHETIC_RADIUS * Math.sqrt(random.nextDouble());
+            double speed = Math.sqrt(Planet.GRAVITATIONAL_CONSTANT * SYNTHETIC_MASS * r) / SYNTHETIC_RADIUS;
+            particles.add(r * Math.cos(angle), r * Math.sin(angle), -speed * Math.sin(angle), speed * Math.cos(angle), mass, "earth.gif");
+        }
+
+        return new BenchmarkUniverse(particles, SYNTHETIC_RADIUS);
+
+    }
+
+    /*
+     * Copies the initial particles into a store, so every benchmark iteration
+     * starts from the same state
+     */
+    void reset(ParticleStore particles) {
+        particles.copyFrom(initial);
+    }
+
+    /*
+     * A new store holding a copy of the initial particles
+     */
+    ParticleStore copy() {
+
+        ParticleStore particles = new ParticleStore(initial.size());
+        reset(particles);
+
+        return particles;
+
+    }
+
+    /*
+     * Amount of particles in the universe
+     */
+    int size() {
+        return initial.size();
+    }
+
+    /*
+     * Radius of the universe
+     */
+    double getRadius() {
+        return radius;
+    }
+
+    /*
+     * A time step of a thousandth of the universe's dynamical time
+     */
+    double getTimeStep() {
+        return timeStep;
+    }
+
+    /*
+     * Builds a force engine by its benchmark name, with a thread for every
+     * processor if it is parallel
+     */
+    static ForceEngine createEngine(String name, double radius) {
+        return createEngine(name, radius, Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+     * Builds a force engine by its benchmark name, with the given amount of
+     * threads if it is parallel. Particle mesh engines may be named with the
+     * width of their mesh, as in "p3m-32", and have the default mesh without
+     */
+    static ForceEngine createEngine(String name, double radius, int threads) {
+
+        int split = name.indexOf(MESH_SEPARATOR);
+        if (split > 0 && (name.startsWith("pm") || name.startsWith("p3m"))) {
+            return new ParticleMesh(radius, Integer.parseInt(name.substring(split + 1)), name.startsWith("p3m"), 0.0);
+        }
+
+        switch (name) {
+        case "direct":
+            return new DirectSum();
+        case "symmetric":
+            return new SymmetricDirectSum();
+        case "vector":
+            return VectorSupport.createDirectSum();
+        case "vector-symmetric":
+            return VectorSupport.createSymmetricSum();
+        case "mixed":
+            return new MixedPrecisionSum();
+        case "tiled":
+            return new TiledDirectSum();
+        case "barnes-hut":
+            return new BarnesHut(radius, BarnesHut.DEFAULT_THETA);
+        case "fmm":
+            return new FastMultipole(FastMultipole.DEFAULT_ORDER, BarnesHut.DEFAULT_THETA, 0.0);
+        case "pm":
+            return new ParticleMesh(radius, ParticleMesh.DEFAULT_MESH, false, 0.0);
+        case "p3m":
+            return new ParticleMesh(radius, ParticleMesh.DEFAULT_MESH, true, 0.0);
+        case "parallel":
+            return new ParallelForces(new DirectSum(), threads);
+        case "parallel-vector":
+            return new ParallelForces(VectorSupport.createDirectSum(), threads);
+        case "parallel-mixed":
+            return new ParallelForces(new MixedPrecisionSum(), threads);
+        case "parallel-tiled":
+            return new ParallelForces(new TiledDirectSum(), threads);
+        case "parallel-barnes-hut":
+            return new ParallelForces(new BarnesHut(radius, BarnesHut.DEFAULT_THETA), threads);
+        default:
+            throw new IllegalArgumentException("Unknown force engine: " + name);
+        }
+    }
+
+    /*
+     * Builds an integrator by its benchmark name, for a universe of the given
+     * radius
+     */
+    static Integrator createIntegrator(String name, double radius) {
+
+        switch (name) {
+        case SimulationOptions.EULER_INTEGRATOR:
+            return new EulerIntegrator();
+        case SimulationOptions.LEAPFROG_INTEGRATOR:
+            return new LeapfrogIntegrator();
+        case SimulationOptions.BLOCK_INTEGRATOR:
+            return new BlockTimestepIntegrator(BlockTimestepIntegrator.DEFAULT_MAX_LEVEL, BlockTimestepIntegrator.DEFAULT_ETA);
+        case ENCOUNTER_INTEGRATOR:
+            return new EncounterIntegrator(ENCOUNTER_DISTANCE * radius, EncounterIntegrator.DEFAULT_MAX_SUB_STEPS, BlockTimestepIntegrator.DEFAULT_ETA, 0.0);
+        default:
+            throw new IllegalArgumentException("Unknown integrator: " + name);
+        }
+    }
+
+    /*
+     * Stops the threads of a force engine that has them
+     */
+    static void shutdown(ForceEngine engine) {
+        if (engine instanceof ParallelForces) {
+            ((ParallelForces) engine).shutdown();
+        }
+    }
+
+}
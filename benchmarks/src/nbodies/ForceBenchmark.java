@@ -0,0 +1,88 @@
+package nbodies;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long a force engine takes to compute the accelerations of every
+ * particle in a universe once. Besides the time of a whole evaluation, the
+ * interactions counter reports the time per pairwise interaction, counting
+ * N(N-1) interactions per evaluation whatever the engine, so that engines are
+ * compared on the same scale across universe sizes
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", VectorSupport.MODULE })
+public class ForceBenchmark {
+
+    @Param({ "planets.txt", "galaxy.txt", "sbh3.txt", "uniform100.txt", "uniform-1000", "uniform-10000", "uniform-100000" })
+    public String universe; // data file or synthetic universe to compute the forces in
+
+    @Param({ "direct", "symmetric", "vector", "vector-symmetric", "mixed", "tiled", "barnes-hut", "fmm", "pm", "p3m" })
+    public String engine; // force engine to measure
+
+    private ParticleStore particles; // particles of the universe
+    private ForceEngine forces; // engine being measured
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        BenchmarkUniverse universe = BenchmarkUniverse.load(this.universe);
+        particles = universe.copy();
+        forces = BenchmarkUniverse.createEngine(engine, universe.getRadius());
+
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkUniverse.shutdown(forces);
+    }
+
+    @Benchmark
+    public double computeAccelerations(Interactions interactions) {
+
+        forces.computeAccelerations(particles);
+        interactions.interactions += (long) particles.size() * (particles.size() - 1);
+
+        return particles.ax[0];
+
+    }
+
+    /**
+     * Counts the pairwise interactions accounted for by the force evaluations
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Interactions {
+
+        public long interactions; // interactions accounted for in this iteration
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            interactions = 0;
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package nbodies;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Reports how far mixed precision forces move away from double precision on
+ * the data files shipped with the simulation. For each universe the relative
+ * force error of MixedPrecisionSum against direct summation is printed, then
+ * the same universe is moved with leapfrog integration by both engines and
+ * the largest distance between a particle's two positions is printed as a
+ * fraction of the radius of the universe. Chaotic universes drift apart under
+ * any difference in rounding, so the later deviation also shows how sensitive
+ * a universe is. Run by hand, with the names of universes to report on or
+ * none for every data file
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+public final class PrecisionReport {
+
+    public static final int SAMPLES = 1000; // most particles the forces are compared on
+    public static final int STEPS = 1000; // steps each universe is moved by both engines
+
+    private PrecisionReport() {
+    }
+
+    /**
+     * Print the deviation of mixed precision from double precision on each
+     * universe
+     *
+     * @param args The universes to report on, or none for every data file
+     * @throws IOException if a universe data file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+
+        String[] universes = args;
+        if (universes.length == 0) {
+            File data = Paths.get(System.getProperty(BenchmarkUniverse.DATA_PROPERTY, BenchmarkUniverse.DEFAULT_DATA)).toFile();
+            universes = data.list((folder, name) -> name.endsWith(".txt"));
+            Arrays.sort(universes);
+        }
+
+        System.out.println(String.format("%-26s %9s %10s %10s %12s", "universe", "particles", "rms force", "max force", "drift/radius"));
+        for (String name : universes) {
+            BenchmarkUniverse universe = BenchmarkUniverse.load(name);
+            ForceAccuracy accuracy = ForceAccuracy.measure(universe.copy(), new MixedPrecisionSum(), 0.0, SAMPLES);
+            System.out.println(String.format("%-26s %9d %10.2e %10.2e %12.2e", name, universe.size(), accuracy.getRmsError(), accuracy.getMaxError(),
+                    drift(universe)));
+        }
+    }
+
+    /*
+     * Moves a universe with double precision and with mixed precision forces
+     * and returns the largest distance between the two positions of a
+     * particle, relative to the radius of the universe
+     */
+    private static double drift(BenchmarkUniverse universe) {
+
+        ParticleStore exact = universe.copy();
+        ParticleStore mixed = universe.copy();
+        ForceEngine direct = new DirectSum();
+        ForceEngine single = new MixedPrecisionSum();
+        Integrator exactSteps = new LeapfrogIntegrator();
+        Integrator mixedSteps = new LeapfrogIntegrator();
+        double dt = universe.getTimeStep();
+
+        for (int s = 0; s < STEPS; s++) {
+            exactSteps.step(exact, direct, dt);
+            mixedSteps.step(mixed, single, dt);
+        }
+
+        double largest = 0.0;
+        for (int i = 0; i < exact.size(); i++) {
+            largest = Math.max(largest, Math.hypot(mixed.getX(i) - exact.getX(i), mixed.getY(i) - exact.getY(i)));
+        }
+
+        return largest / universe.getRadius();
+
+    }
+
+}
@@ -0,0 +1,96 @@
+package nbodies;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many whole simulation steps an integrator takes each second,
+ * forces included. Every iteration starts again from the initial state of the
+ * universe, so integrators whose work depends on the state, like block time
+ * steps, are measured over the same stretch of the simulation. Direct forces
+ * and vector forces are summed the way NBody sums them: pairwise for whole
+ * steps, per particle for block time steps
+ *
+ * @author Peter Swantek
+ * @version 1.8
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", VectorSupport.MODULE })
+public class StepBenchmark {
+
+    @Param({ "planets.txt", "galaxy.txt", "sbh3.txt", "uniform100.txt", "uniform-1000", "uniform-10000", "uniform-100000" })
+    public String universe; // data file or synthetic universe to simulate
+
+    @Param({ "euler", "leapfrog", "block", "encounters" })
+    public String integrator; // integrator to measure
+
+    @Param({ "direct", "vector", "barnes-hut", "fmm", "pm", "p3m" })
+    public String forces; // how the forces are computed each step
+
+    private BenchmarkUniverse initial; // the universe before any step
+    private ParticleStore particles; // particles being simulated
+    private ForceEngine engine; // computes the forces each step
+    private Integrator method; // integrator being measured
+    private double dt; // time step of the simulation
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        initial = BenchmarkUniverse.load(universe);
+        particles = initial.copy();
+        dt = initial.getTimeStep();
+        method = BenchmarkUniverse.createIntegrator(integrator, initial.getRadius());
+
+        boolean block = integrator.equals(SimulationOptions.BLOCK_INTEGRATOR);
+        if (forces.equals("direct")) {
+            engine = BenchmarkUniverse.createEngine(block ? "direct" : "symmetric", initial.getRadius());
+        } else if (forces.equals("vector")) {
+            engine = BenchmarkUniverse.createEngine(block ? "vector" : "vector-symmetric", initial.getRadius());
+        } else {
+            engine = BenchmarkUniverse.createEngine(forces, initial.getRadius());
+        }
+
+    }
+
+    @Setup(Level.Iteration)
+    public void restart() {
+
+        initial.reset(particles);
+        method.reset();
+
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkUniverse.shutdown(engine);
+    }
+
+    @Benchmark
+    public double step() {
+
+        method.step(particles, engine, dt);
+
+        return particles.x[0];
+
+    }
+
+}